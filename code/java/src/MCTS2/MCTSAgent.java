@@ -1,7 +1,9 @@
 package MCTS2;
 
+import board.BitBoard;
 import board.Board;
 import main.Agent;
+import math.SelectionPolicy;
 
 import java.util.Comparator;
 import java.util.NoSuchElementException;
@@ -14,10 +16,11 @@ public class MCTSAgent extends Agent {
     Random rand; // All random decisions are based on this object, so can be seeded for determinism
     public int iterations = 0;
     public int moves = 0;
+    public SelectionPolicy selectionPolicy = SelectionPolicy.UCB1; // Formula used to select children
 
     public MCTSAgent(int player, double timeLimit, int rows, int columns, String gameId) {
         super(player, timeLimit, rows, columns, gameId);
-        this.rootNode = new Node(new Board(columns, rows, false));
+        this.rootNode = new Node(new BitBoard(columns, rows, false));
         this.rand = new Random();
     }
 
@@ -85,7 +88,7 @@ public class MCTSAgent extends Agent {
         Node node = this.rootNode;
 
         while (!node.canExpand() && !node.children.isEmpty()) {
-            node = node.selectChildUCB();
+            node = node.selectChild(this.selectionPolicy);
         }
 
         return node;
@@ -105,8 +108,10 @@ public class MCTSAgent extends Agent {
 
     void update(Node node, double result) {
         while (node != null) {
+            double score = Node.getScore(result, this.player);
             node.plays++;
-            node.score += Node.getScore(result, this.player);
+            node.score += score;
+            node.squaredScore += score * score;
             node = node.parent;
         }
     }
@@ -3,10 +3,9 @@ package MCTS2;
 import board.Board;
 import board.RandomMoveGenerator;
 
-import java.util.*;
+import math.SelectionPolicy;
 
-import static java.lang.Math.log;
-import static java.lang.Math.sqrt;
+import java.util.*;
 
 public class Node {
 
@@ -15,6 +14,7 @@ public class Node {
     public Board board;
     int plays = 0;
     double score = 0.0;
+    double squaredScore = 0.0; // Sum of the squared scores of all plays, for policies that use the variance
 
     ArrayList<Node> children;
     RandomMoveGenerator generator; // Should only be initialized in nodes without optimal moves
@@ -34,13 +34,25 @@ public class Node {
 
 
     Node selectChildUCB() {
-        Optional<Node> optNode = this.children.stream().max(Comparator.comparing(c -> c.score / c.plays + sqrt(2 * log(this.plays) / c.plays)));
-        try {
-            Node maxNode = optNode.get();
-            return maxNode;
-        } catch (NoSuchElementException e) {
-            return null;
+        return selectChild(SelectionPolicy.UCB1);
+    }
+
+    Node selectChild(SelectionPolicy policy) {
+        // Returns the child with the highest value according to policy, null if there are no children
+        // Plain loop without allocations, since this runs at every depth of every iteration
+        Node maxNode = null;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int childrenAmount = this.children.size();
+        double parentTerm = policy.parentTerm(this.plays, childrenAmount);
+        for (int i = 0; i < childrenAmount; i++) {
+            Node child = this.children.get(i);
+            double value = policy.value(child.score, child.squaredScore, child.plays, parentTerm, childrenAmount);
+            if (value > maxValue) {
+                maxNode = child;
+                maxValue = value;
+            }
         }
+        return maxNode;
     }
 
     boolean canExpand() {
@@ -0,0 +1,127 @@
+package MCTS3;
+
+import board.Board;
+import board.BoardState;
+
+public class BatchedAgent extends MCTSAgent {
+
+    // Version of MCTSAgent that evaluates the heuristic for a batch of simulations at once, see ANN.predictBatch
+    // A simulation that ends in the heuristic leaves its input in the batch and the search goes on, its result is back-propagated when the batch is full
+    // Virtual loss: plays are added during selection, so leaves waiting for their result count as lost plays and following iterations prefer other paths
+    // Simulations that play until the game is decided or end in a cached position or a simple loony endgame don't need the ANN and are back-propagated immediately
+    // Batches are only filled by the one searching thread, combining the simulations of several threads into one batch isn't implemented
+
+    public static final int defaultBatchSize = 32;
+
+    public int batchSize;
+    public int batches = 0;
+    double[][] batchInputs;
+    double[] batchOutputs;
+    double[][] batchHidden; // Scratch space of ANN.predictBatch, reused for every batch
+    Node[] batchLeaves; // Simulated node of every input in the batch
+    int[] batchPlayers; // Current player of every board in the batch, needed to convert the outputs
+    long[] batchHashes; // Hash of every board in the batch, to cache the outputs
+    int[][] batchMoves, batchMovePlayers; // Playout moves of every simulation in the batch, for RAVE
+    int batchAmount = 0;
+
+    public BatchedAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, BatchedAgent.defaultBatchSize);
+    }
+
+    public BatchedAgent(int player, double timeLimit, int rows, int columns, String gameId, int batchSize) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.batchSize = batchSize;
+        this.batchInputs = new double[batchSize][Board.heuristicInputSize];
+        this.batchOutputs = new double[batchSize];
+        this.batchHidden = new double[batchSize][this.ann.hiddenWeights.height];
+        this.batchLeaves = new Node[batchSize];
+        this.batchPlayers = new int[batchSize];
+        this.batchHashes = new long[batchSize];
+        this.batchMoves = new int[batchSize][this.playoutMoves.length];
+        this.batchMovePlayers = new int[batchSize][this.playoutMoves.length];
+    }
+
+    @Override
+    void iterate() {
+
+        // Selection
+        Node node = select();
+
+        // Expansion
+        if (node.canExpand(this.wideningConstant, this.wideningExponent)) {
+            node = node.expand(this.rand, this.moveClasses, (this.wideningConstant > 0 ? this.scratchBoards.get() : null));
+        }
+
+        // Virtual loss
+        for (Node pathNode = node; pathNode != null; pathNode = pathNode.parent) {
+            pathNode.plays++;
+        }
+
+        // Simulation
+        // With RAVE the playout moves go to the next free batch slot, where they stay if the simulation has to wait for the batch
+        int[] playedMoves = (this.raveEquivalence > 0 ? this.batchMoves[this.batchAmount] : null);
+        int[] playedPlayers = (this.raveEquivalence > 0 ? this.batchMovePlayers[this.batchAmount] : null);
+        Board boardCopy = this.scratchBoards.get();
+        boardCopy.copyFrom(node.board);
+        MCTSAgent.playUntilHeuristic(boardCopy, this.rand, playedMoves, playedPlayers);
+        if (boardCopy.getState() == BoardState.MIDDLE) {
+            double output = (this.evaluationCache == null ? Double.NaN : this.evaluationCache.get(boardCopy.hash()));
+            if (Double.isNaN(output)) {
+                output = MCTSAgent.exactOutput(boardCopy);
+                if (!Double.isNaN(output) && this.evaluationCache != null)
+                    this.evaluationCache.put(boardCopy.hash(), output);
+            }
+            if (!Double.isNaN(output)) {
+                addScore(node, MCTSAgent.heuristicResult(boardCopy.getCurrentPlayer(), output), playedMoves, playedPlayers);
+                return;
+            }
+            boardCopy.fillHeuristicInput(this.batchInputs[this.batchAmount]);
+            this.batchLeaves[this.batchAmount] = node;
+            this.batchPlayers[this.batchAmount] = boardCopy.getCurrentPlayer();
+            this.batchHashes[this.batchAmount] = boardCopy.hash();
+            this.batchAmount++;
+            if (this.batchAmount == this.batchSize)
+                evaluateBatch();
+        } else {
+            addScore(node, boardCopy.gameResult(), playedMoves, playedPlayers);
+        }
+
+    }
+
+    @Override
+    void endSearch() {
+        // The move is chosen on plays, but the scores of the last batch should still count for the next move
+        evaluateBatch();
+    }
+
+    void evaluateBatch() {
+
+        // Evaluates the inputs in the batch and back-propagates their results
+        if (this.batchAmount == 0)
+            return;
+        // The inputs are normalized in place, which is fine since every slot is refilled before its next batch
+        this.ann.predictBatch(this.batchInputs, this.batchAmount, this.batchOutputs, this.batchHidden);
+        for (int b = 0; b < this.batchAmount; b++) {
+            if (this.evaluationCache != null)
+                this.evaluationCache.put(this.batchHashes[b], this.batchOutputs[b]);
+            addScore(this.batchLeaves[b], MCTSAgent.heuristicResult(this.batchPlayers[b], this.batchOutputs[b]), this.batchMoves[b], this.batchMovePlayers[b]);
+            this.batchLeaves[b] = null;
+        }
+        this.batchAmount = 0;
+        this.batches++;
+
+    }
+
+    void addScore(Node leaf, double result, int[] playedMoves, int[] playedPlayers) {
+        // Like update, but plays were already added during selection
+        // playedMoves is null if RAVE is off, otherwise the all-moves-as-first statistics are updated like in MCTSAgent.iterate
+        double score = Node.getScore(result, this.player);
+        for (Node node = leaf; node != null; node = node.parent) {
+            node.score += score;
+            node.squaredScore += score * score;
+        }
+        if (playedMoves != null)
+            updateRave(leaf, result, playedMoves, playedPlayers);
+    }
+
+}
@@ -0,0 +1,245 @@
+package MCTS3;
+
+import ann.ANN;
+import board.BitBoard;
+import board.Board;
+import board.MoveClassIterator;
+import main.Agent;
+import math.SelectionPolicy;
+import math.Vector;
+
+import java.util.Random;
+
+public class CompactAgent extends Agent {
+
+    // Version of MCTSAgent that keeps its tree in a NodeStore instead of Node objects
+    // Only the root board is stored, every iteration replays the moves of the selected path on a single reused board
+    // A node takes a few dozen bytes instead of a full board, so the tree can grow much larger before memory runs out
+
+    public static final int initialCapacity = 1 << 16;
+    public static final int defaultNodeBudget = 1 << 21; // About 110 MB, see NodeStore.bytesPerNode
+
+    NodeStore store;
+    Board rootBoard;
+    Board board; // Board of the node that is currently being searched
+    Random rand; // All random decisions are based on this object, so can be seeded for determinism
+    public int iterations = 0;
+    public int moves = 0;
+    public boolean moveClasses = true; // See MCTSAgent.moveClasses
+    public SelectionPolicy selectionPolicy = SelectionPolicy.UCB1; // See MCTSAgent.selectionPolicy
+    public int nodeBudget; // Maximum amount of nodes, the stalest and least played subtrees are pruned when the tree reaches it, see NodeStore.prune
+    public int prunes = 0;
+    ANN ann;
+    Vector heuristicInput = new Vector(new double[Board.heuristicInputSize]);
+    int[] candidates; // Moves that can be expanded in the current node
+    int[] childStamps; // childStamps[move] == stamp if the current node already has a child for move
+    int stamp = 0;
+
+    public CompactAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, CompactAgent.defaultNodeBudget);
+    }
+
+    public CompactAgent(int player, double timeLimit, int rows, int columns, String gameId, int nodeBudget) {
+        super(player, timeLimit, rows, columns, gameId);
+        // The root and its children are never pruned, so they should always fit
+        this.nodeBudget = Math.max(nodeBudget, 2 * (2 * columns * rows + columns + rows + 1));
+        this.store = new NodeStore(Math.min(CompactAgent.initialCapacity, this.nodeBudget));
+        this.store.maxCapacity = this.nodeBudget;
+        this.store.createNode(NodeStore.NO_NODE, 0);
+        this.rootBoard = new BitBoard(columns, rows, false);
+        this.board = new BitBoard(columns, rows, false);
+        this.rand = new Random();
+        this.ann = ANN.load(MCTSAgent.annPath);
+        this.candidates = new int[2 * columns * rows + columns + rows];
+        this.childStamps = new int[(2 * columns + 1) * (2 * rows + 1)];
+    }
+
+    @Override
+    public void registerAction(int ownScore, int opponentScore, int x, int y) {
+
+        // Keep the subtree of the played move if it exists, otherwise start over
+        int move = this.rootBoard.edgeToInt(x, y);
+        int child = this.store.findChild(0, move);
+        if (child != NodeStore.NO_NODE) {
+            this.store.moveSubtreeToRoot(child);
+        } else {
+            this.store.clear();
+            this.store.createNode(NodeStore.NO_NODE, 0);
+        }
+        this.rootBoard.registerMove(move);
+
+    }
+
+    @Override
+    public int[] getNextMove() {
+
+        // Search until the hard time, or until the time manager decides to stop, see MCTSAgent.getNextMove
+        long startTime = System.nanoTime();
+        this.timeManager.startMove(this.rootBoard);
+        int moveIterations = 0;
+        while (true) {
+            iterate();
+            this.iterations++;
+            moveIterations++;
+            double elapsed = (System.nanoTime() - startTime) / 1000000000.0;
+            if (elapsed >= this.timeManager.hardTime)
+                break;
+            if (moveIterations % MCTSAgent.checkInterval == 1 && shouldStop(elapsed, moveIterations / elapsed))
+                break;
+        }
+        this.timeManager.endMove((System.nanoTime() - startTime) / 1000000000.0);
+        this.moves++;
+
+        // Return most visited node's move
+        int bestChild = NodeStore.NO_NODE;
+        for (int child = this.store.firstChild[0]; child != NodeStore.NO_NODE; child = this.store.nextSibling[child]) {
+            if (bestChild == NodeStore.NO_NODE || this.store.plays[child] > this.store.plays[bestChild])
+                bestChild = child;
+        }
+        return (bestChild == NodeStore.NO_NODE ? null : this.rootBoard.intToEdge(this.store.move[bestChild]));
+
+    }
+
+    boolean shouldStop(double elapsed, double iterationsPerSecond) {
+        // Same as MCTSAgent.shouldStop
+        int best = NodeStore.NO_NODE;
+        int secondPlays = 0;
+        for (int child = this.store.firstChild[0]; child != NodeStore.NO_NODE; child = this.store.nextSibling[child]) {
+            if (best == NodeStore.NO_NODE || this.store.plays[child] > this.store.plays[best]) {
+                secondPlays = (best == NodeStore.NO_NODE ? 0 : this.store.plays[best]);
+                best = child;
+            } else if (this.store.plays[child] > secondPlays) {
+                secondPlays = this.store.plays[child];
+            }
+        }
+        return this.timeManager.shouldStop(this.rootBoard, elapsed, iterationsPerSecond, (best == NodeStore.NO_NODE ? 0 : this.store.move[best]), (best == NodeStore.NO_NODE ? 0 : this.store.plays[best]), secondPlays);
+    }
+
+    public int nodes() {
+        return this.store.size;
+    }
+
+    public long estimatedBytes() {
+        return this.store.estimatedBytes();
+    }
+
+    void iterate() {
+
+        // Make room for the node this iteration can create
+        if (this.store.size >= this.nodeBudget) {
+            this.store.prune(this.nodeBudget / 2);
+            this.prunes++;
+        }
+
+        // Selection and expansion, playing the moves on the path on this.board
+        this.board.copyFrom(this.rootBoard);
+        int node = 0;
+        while (true) {
+            if (!this.store.expanded[node]) {
+                int child = expand(node);
+                if (child != NodeStore.NO_NODE) {
+                    node = child;
+                    break;
+                }
+            }
+            if (this.store.firstChild[node] == NodeStore.NO_NODE) {
+                // Game over in this node
+                break;
+            }
+            node = selectChild(node);
+            this.board.registerMove(this.store.move[node]);
+        }
+
+        // Simulation, the board isn't needed anymore afterwards
+        double result = MCTSAgent.playout(this.board, this.rand, this.ann, this.heuristicInput);
+
+        // Back-propagation
+        double score = Node.getScore(result, this.player);
+        while (node != NodeStore.NO_NODE) {
+            this.store.plays[node]++;
+            this.store.score[node] += score;
+            this.store.squaredScore[node] += score * score;
+            this.store.lastVisit[node] = this.iterations;
+            node = this.store.parent[node];
+        }
+
+    }
+
+    int selectChild(int node) {
+        // Same as Node.selectChild, the children are counted first since the policy can depend on their amount
+        int maxChild = NodeStore.NO_NODE;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int childrenAmount = 0;
+        for (int child = this.store.firstChild[node]; child != NodeStore.NO_NODE; child = this.store.nextSibling[child]) {
+            childrenAmount++;
+        }
+        double parentTerm = this.selectionPolicy.parentTerm(this.store.plays[node], childrenAmount);
+        for (int child = this.store.firstChild[node]; child != NodeStore.NO_NODE; child = this.store.nextSibling[child]) {
+            double value = this.selectionPolicy.value(this.store.score[child], this.store.squaredScore[child], this.store.plays[child], parentTerm, childrenAmount);
+            if (value > maxValue) {
+                maxChild = child;
+                maxValue = value;
+            }
+        }
+        return maxChild;
+    }
+
+    int expand(int node) {
+
+        // Creates a child for a random move of this.board that doesn't have one yet, plays it on this.board and returns the child
+        // Like Node.expand, only considers optimal moves if there are any, and avoids bad moves if possible
+        // Returns NO_NODE and marks the node as expanded if all children already exist
+        // Also returns NO_NODE if the store is full, then the search continues from this node without expanding it
+
+        if (this.store.isFull())
+            return NodeStore.NO_NODE;
+
+        // Mark existing children
+        this.stamp++;
+        for (int child = this.store.firstChild[node]; child != NodeStore.NO_NODE; child = this.store.nextSibling[child]) {
+            this.childStamps[this.store.move[child]] = this.stamp;
+        }
+
+        // Collect moves without a child
+        int candidatesAmount = 0;
+        if (this.board.hasOptimalMoves()) {
+            for (int move : this.board.getOptimalMoves()) {
+                if (this.childStamps[move] != this.stamp)
+                    this.candidates[candidatesAmount++] = move;
+            }
+        } else if (this.moveClasses) {
+            for (MoveClassIterator it = this.board.getMoveClassIterator(); it.hasNext(); ) {
+                int move = it.getNextMove();
+                if (this.childStamps[move] != this.stamp)
+                    this.candidates[candidatesAmount++] = move;
+            }
+        } else {
+            for (int i = 0; i < this.board.movesLeft; i++) {
+                int move = this.board.openEdges[i];
+                if (this.childStamps[move] != this.stamp)
+                    this.candidates[candidatesAmount++] = move;
+            }
+        }
+
+        if (candidatesAmount == 0) {
+            this.store.expanded[node] = true;
+            return NodeStore.NO_NODE;
+        }
+        if (candidatesAmount == 1)
+            this.store.expanded[node] = true;
+
+        // Generate move
+        int move = 0;
+        for (int i = 0; i < 100; i++) {
+            move = this.candidates[this.rand.nextInt(candidatesAmount)];
+            if (this.board.hasOptimalMoves() || !this.board.isBad(move))
+                break;
+        }
+
+        // Create child
+        this.board.registerMove(move);
+        return this.store.createNode(node, move);
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package MCTS3;
+
+import board.Board;
+import board.RandomMoveGenerator;
+import math.SelectionPolicy;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+public class ConcurrentNode {
+
+    // Node of a search tree that is shared by multiple search threads, see TreeParallelAgent
+    // Works like Node, but statistics are updated atomically and expansion is synchronized
+    // Virtual loss: plays is incremented when a thread selects the node, score only when its simulation has finished
+    // Until then, the selection counts as a lost play, which steers other threads towards other children
+
+    private static final AtomicIntegerFieldUpdater<ConcurrentNode> playsUpdater = AtomicIntegerFieldUpdater.newUpdater(ConcurrentNode.class, "plays");
+    private static final AtomicLongFieldUpdater<ConcurrentNode> scoreUpdater = AtomicLongFieldUpdater.newUpdater(ConcurrentNode.class, "scoreBits");
+    private static final AtomicLongFieldUpdater<ConcurrentNode> squaredScoreUpdater = AtomicLongFieldUpdater.newUpdater(ConcurrentNode.class, "squaredScoreBits");
+
+    ConcurrentNode parent;
+    public int move;
+    public Board board;
+    volatile int plays = 0;
+    volatile long scoreBits = Double.doubleToRawLongBits(0.0); // Score as raw double bits, so it can be updated with compare-and-set
+    volatile long squaredScoreBits = Double.doubleToRawLongBits(0.0); // Sum of the squared scores, see Node.squaredScore
+
+    // Children are allocated once with room for every possible child, at the first expansion
+    // A child is stored before childrenAmount is increased, so other threads can read the first childrenAmount children without locking
+    ConcurrentNode[] children;
+    volatile int childrenAmount = 0;
+    volatile boolean expanded = false; // Whether or not all children have been created, only changes from false to true
+    RandomMoveGenerator generator; // Only used while holding the lock of this node
+    int alreadyGeneratedOptimalMove = -1;
+
+    public ConcurrentNode(Board board, ConcurrentNode parent, int move) {
+        this.board = board;
+        this.parent = parent;
+        this.move = move;
+        this.children = null;
+        this.generator = null;
+    }
+
+    public ConcurrentNode(Board board) {
+        this(board, null, 0);
+    }
+
+    double getScore() {
+        return Double.longBitsToDouble(this.scoreBits);
+    }
+
+    double getSquaredScore() {
+        return Double.longBitsToDouble(this.squaredScoreBits);
+    }
+
+    void addPlay() {
+        // Adds a play without score, the virtual loss
+        ConcurrentNode.playsUpdater.incrementAndGet(this);
+    }
+
+    void addScore(double score) {
+        long oldBits;
+        long newBits;
+        do {
+            oldBits = this.scoreBits;
+            newBits = Double.doubleToRawLongBits(Double.longBitsToDouble(oldBits) + score);
+        } while (!ConcurrentNode.scoreUpdater.compareAndSet(this, oldBits, newBits));
+        do {
+            oldBits = this.squaredScoreBits;
+            newBits = Double.doubleToRawLongBits(Double.longBitsToDouble(oldBits) + score * score);
+        } while (!ConcurrentNode.squaredScoreUpdater.compareAndSet(this, oldBits, newBits));
+    }
+
+    ConcurrentNode selectChild(SelectionPolicy policy) {
+        // Same as Node.selectChild, plays include the virtual losses of threads that are still simulating
+        ConcurrentNode maxNode = null;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int childrenAmount = this.childrenAmount;
+        ConcurrentNode[] children = this.children;
+        double parentTerm = policy.parentTerm(this.plays, childrenAmount);
+        for (int i = 0; i < childrenAmount; i++) {
+            ConcurrentNode child = children[i];
+            double value = policy.value(child.getScore(), child.getSquaredScore(), child.plays, parentTerm, childrenAmount);
+            if (value > maxValue) {
+                maxNode = child;
+                maxValue = value;
+            }
+        }
+        return maxNode;
+    }
+
+    private boolean canExpand() {
+        // Only called while holding the lock of this node, see Node.canExpand
+        if (this.generator == null) {
+            if (this.board.hasOptimalMoves()) {
+                return this.childrenAmount < this.board.getOptimalMoves().length;
+            } else {
+                return this.board.movesLeft > 0;
+            }
+        } else {
+            return this.generator.hasMovesLeft();
+        }
+    }
+
+    synchronized ConcurrentNode expand(Random rand, boolean moveClasses) {
+
+        // Creates a new random child, adds a play to it for the calling thread and returns it
+        // Returns null if another thread already created the last child
+
+        if (!canExpand()) {
+            this.expanded = true;
+            return null;
+        }
+
+        // Generate move, see Node.expand
+        int move = 0;
+        if (this.board.hasOptimalMoves()) {
+            if (this.board.optimalMoves.length == 1) {
+                move = this.board.getOptimalMoves()[0];
+            } else {
+                if (this.alreadyGeneratedOptimalMove == -1) {
+                    this.alreadyGeneratedOptimalMove = rand.nextInt(2);
+                    move = this.board.getOptimalMoves()[this.alreadyGeneratedOptimalMove];
+                } else {
+                    move = this.board.getOptimalMoves()[(this.alreadyGeneratedOptimalMove + 1) % 2];
+                }
+            }
+        } else {
+            if (this.generator == null)
+                this.generator = new RandomMoveGenerator(this.board, moveClasses);
+            // The last try is kept even if it's bad, so every move is generated only once and the children always fit
+            for (int i = 0; i < 100; i++) {
+                move = this.generator.getRandomLegalMoveAsInt(rand);
+                if (this.board.isBad(move) && i < 99) {
+                    this.generator.reverseMove(move);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        // Create child, it's counted as played before other threads can see it so they never divide by 0 plays
+        Board childBoard = this.board.deepcopy();
+        childBoard.registerMove(move);
+        ConcurrentNode child = new ConcurrentNode(childBoard, this, move);
+        child.plays = 1;
+        if (this.children == null)
+            this.children = new ConcurrentNode[this.board.hasOptimalMoves() ? this.board.getOptimalMoves().length : this.generator.moves.length];
+        this.children[this.childrenAmount] = child;
+        this.childrenAmount++;
+        if (!canExpand())
+            this.expanded = true;
+        return child;
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package MCTS3;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class EvaluationCache {
+
+    // Fixed-size cache of evaluations (ANN outputs or exact outcomes) of positions in the middle state, keyed by Board.hash
+    // Can be shared by search threads without locks: every entry stores its key xor'ed with its value next to the value
+    // A lookup only hits if both still match, so an entry that's torn by a concurrent write is a miss instead of a wrong value
+    // Every key maps to a set of entries, within a set entries are replaced in CLOCK order: an entry that was hit since the hand last passed it gets a second chance
+
+    public static final int defaultSize = 1 << 16; // About 1 MB
+    public static final int ways = 4; // Entries per set
+
+    final long[] checks; // Key xor value bits
+    final long[] values; // Value bits
+    final boolean[] referenced; // Whether or not the entry was hit since the hand last passed it
+    final int[] hands; // Next entry to replace in every set
+    final int setMask;
+    public final LongAdder hits = new LongAdder();
+    public final LongAdder misses = new LongAdder();
+
+    public EvaluationCache(int size) {
+        // size is rounded up to a power of two of at least ways
+        int sets = 1;
+        while (sets * EvaluationCache.ways < size) {
+            sets <<= 1;
+        }
+        this.checks = new long[sets * EvaluationCache.ways];
+        this.values = new long[sets * EvaluationCache.ways];
+        this.referenced = new boolean[sets * EvaluationCache.ways];
+        this.hands = new int[sets];
+        this.setMask = sets - 1;
+    }
+
+    public int size() {
+        return this.values.length;
+    }
+
+    public double get(long key) {
+        // Returns the cached value for key, NaN if it isn't cached
+        // Key 0 is never cached, since it matches an empty entry
+        if (key != 0) {
+            int first = (int) (key & this.setMask) * EvaluationCache.ways;
+            for (int entry = first; entry < first + EvaluationCache.ways; entry++) {
+                long value = this.values[entry];
+                if ((this.checks[entry] ^ value) == key) {
+                    this.referenced[entry] = true;
+                    this.hits.increment();
+                    return Double.longBitsToDouble(value);
+                }
+            }
+        }
+        this.misses.increment();
+        return Double.NaN;
+    }
+
+    public void put(long key, double value) {
+
+        // Caches value for key, replacing the first entry of its set the hand finds without a second chance
+        // Concurrent puts in the same set may replace the same entry, which only loses one of the values
+        if (key == 0)
+            return;
+        int set = (int) (key & this.setMask);
+        int first = set * EvaluationCache.ways;
+        int hand = this.hands[set];
+        for (int i = 0; i < EvaluationCache.ways && this.referenced[first + hand]; i++) {
+            this.referenced[first + hand] = false;
+            hand = (hand + 1) % EvaluationCache.ways;
+        }
+        this.hands[set] = (hand + 1) % EvaluationCache.ways;
+        long bits = Double.doubleToRawLongBits(value);
+        this.values[first + hand] = bits;
+        this.checks[first + hand] = key ^ bits;
+
+    }
+
+    public double hitRate() {
+        long hits = this.hits.sum();
+        long total = hits + this.misses.sum();
+        return (total == 0 ? 0 : (double) hits / total);
+    }
+
+}
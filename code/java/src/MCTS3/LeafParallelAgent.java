@@ -0,0 +1,100 @@
+package MCTS3;
+
+import board.Board;
+import math.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class LeafParallelAgent extends MCTSAgent {
+
+    // Leaf parallel version of MCTSAgent: the tree is only used by the calling thread, but every expanded leaf gets a batch of playouts from a worker pool
+    // The results of a batch are back-propagated at once, as batchSize plays
+    // Larger batches give more accurate leaf values, but a smaller tree in the same time
+
+    public static final int defaultBatchSize = 8;
+
+    public int batchSize;
+    public int playouts = 0;
+    ThreadLocal<Random> rands = ThreadLocal.withInitial(Random::new); // Workers can't share this.rand
+    ThreadLocal<Vector> heuristicInputs = ThreadLocal.withInitial(() -> new Vector(new double[Board.heuristicInputSize]));
+    ThreadPoolExecutor executor;
+    int[][] batchMoves, batchMovePlayers; // Playout moves of every playout in a batch, for RAVE
+
+    public LeafParallelAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, Runtime.getRuntime().availableProcessors(), LeafParallelAgent.defaultBatchSize);
+    }
+
+    public LeafParallelAgent(int player, double timeLimit, int rows, int columns, String gameId, int threads, int batchSize) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.batchSize = batchSize;
+        this.batchMoves = new int[batchSize][this.playoutMoves.length];
+        this.batchMovePlayers = new int[batchSize][this.playoutMoves.length];
+        // Idle threads time out between games, daemon threads so they never keep the program running
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    void iterate() {
+
+        // Selection
+        Node node = select();
+
+        // Expansion
+        if (node.canExpand(this.wideningConstant, this.wideningExponent)) {
+            node = node.expand(this.rand, this.moveClasses, (this.wideningConstant > 0 ? this.scratchBoards.get() : null));
+        }
+
+        // Simulation
+        // Workers only read the leaf board, every playout runs on the scratch board of its thread
+        // With RAVE every playout writes its moves to its own row of batchMoves
+        Board leafBoard = node.board;
+        boolean rave = this.raveEquivalence > 0;
+        List<Future<Double>> futures = new ArrayList<>(this.batchSize);
+        for (int i = 0; i < this.batchSize; i++) {
+            int[] playedMoves = (rave ? this.batchMoves[i] : null);
+            int[] playedPlayers = (rave ? this.batchMovePlayers[i] : null);
+            futures.add(this.executor.submit(() -> {
+                Board boardCopy = this.scratchBoards.get();
+                boardCopy.copyFrom(leafBoard);
+                return MCTSAgent.playout(boardCopy, this.rands.get(), this.ann, this.heuristicInputs.get(), this.evaluationCache, playedMoves, playedPlayers);
+            }));
+        }
+        double score = 0.0;
+        double squaredScore = 0.0;
+        for (int i = 0; i < this.batchSize; i++) {
+            try {
+                double result = futures.get(i).get();
+                double playoutScore = Node.getScore(result, this.player);
+                score += playoutScore;
+                squaredScore += playoutScore * playoutScore;
+                if (rave)
+                    updateRave(node, result, this.batchMoves[i], this.batchMovePlayers[i]);
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.playouts += this.batchSize;
+
+        // Back-propagation
+        while (node != null) {
+            node.plays += this.batchSize;
+            node.score += score;
+            node.squaredScore += squaredScore;
+            node = node.parent;
+        }
+
+    }
+
+}
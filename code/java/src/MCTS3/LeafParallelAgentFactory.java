@@ -0,0 +1,13 @@
+package MCTS3;
+
+import main.Agent;
+import main.AgentFactory;
+
+public class LeafParallelAgentFactory implements AgentFactory {
+
+    @Override
+    public Agent create(int player, double timeLimit, int rows, int columns, String gameId) {
+        return new LeafParallelAgent(player, timeLimit, rows, columns, gameId);
+    }
+
+}
@@ -1,9 +1,13 @@
 package MCTS3;
 
 import ann.ANN;
+import board.BitBoard;
 import board.Board;
 import board.BoardState;
+import board.EndgameEvaluator;
 import main.Agent;
+import math.SelectionPolicy;
+import math.Vector;
 
 import java.util.Comparator;
 import java.util.NoSuchElementException;
@@ -13,17 +17,41 @@ import java.util.Random;
 public class MCTSAgent extends Agent {
 
     public static final String annPath = "final_ann";
+    public static final int checkInterval = 64; // Iterations in between checks of the time manager
     Node rootNode;
     Random rand; // All random decisions are based on this object, so can be seeded for determinism
     public int iterations = 0;
     public int moves = 0;
+    public SelectionPolicy selectionPolicy = SelectionPolicy.UCB1; // Formula used to select children
     ANN ann;
+    Vector heuristicInput = new Vector(new double[Board.heuristicInputSize]); // Reused for every simulation that ends in the heuristic
+    ThreadLocal<Board> scratchBoards; // Simulations copy the simulated board into the scratch board of their thread instead of allocating a new one
+    public boolean rewindPlayouts = false; // If true, simulations play on the simulated board itself and undo their moves afterwards
+    public boolean moveClasses = true; // If true, nodes only get one child per class of equivalent moves
+    public double raveEquivalence = 0; // Plays of a child at which its own value and its all-moves-as-first value get equal weight in selection, 0 disables RAVE, 1000 works reasonably
+    public double wideningConstant = 0; // If positive, nodes can have ceil(wideningConstant * plays^wideningExponent) children, expanded in the order of a cheap prior (see Node.orderByPrior), 0 disables progressive widening, 4 works reasonably
+    public double wideningExponent = 0.5;
+    int[] playoutMoves, playoutPlayers; // Moves of the last playout and the players who played them, ending with move 0
+    int[][] raveStamps; // raveStamps[player][move] == raveStamp if player played move after the node being updated
+    int raveStamp = 0;
+    public EvaluationCache evaluationCache; // ANN outputs of earlier simulations, null disables caching
+    public double searchTime = 0; // Total time spent searching, in seconds
 
     public MCTSAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, ANN.load(MCTSAgent.annPath), new EvaluationCache(EvaluationCache.defaultSize));
+    }
+
+    public MCTSAgent(int player, double timeLimit, int rows, int columns, String gameId, ANN ann, EvaluationCache evaluationCache) {
+        // The ANN is only read during search and the cache can be used by multiple threads, so both can be shared by agents that search at the same time
         super(player, timeLimit, rows, columns, gameId);
-        this.rootNode = new Node(new Board(columns, rows, false));
+        this.rootNode = new Node(new BitBoard(columns, rows, false));
         this.rand = new Random();
-        this.ann = ANN.load(MCTSAgent.annPath);
+        this.ann = ann;
+        this.evaluationCache = evaluationCache;
+        this.scratchBoards = ThreadLocal.withInitial(() -> new BitBoard(columns, rows, false));
+        this.playoutMoves = new int[2 * columns * rows + columns + rows + 1];
+        this.playoutPlayers = new int[this.playoutMoves.length];
+        this.raveStamps = new int[2][(2 * columns + 1) * (2 * rows + 1)];
     }
 
     @Override
@@ -54,25 +82,24 @@ public class MCTSAgent extends Agent {
     @Override
     public int[] getNextMove() {
 
+        // Search until the hard time, or until the time manager decides to stop, which is checked every checkInterval iterations
         long startTime = System.nanoTime();
-        while (System.nanoTime() < startTime + this.timeLimit * 1000000000) {
-
-            // Selection
-            Node node = select();
-
-            // Expansion
-            if (node.canExpand()) {
-                node = node.expand(this.rand);
-            }
-
-            // Simulation
-            double result = simulate(node.board);
-
-            // Back-propagation
-            update(node, result);
-
-            this.iterations++;
+        this.timeManager.startMove(this.rootNode.board);
+        int moveIterations = 0;
+        while (true) {
+            iterate();
+            moveIterations++;
+            double elapsed = (System.nanoTime() - startTime) / 1000000000.0;
+            if (elapsed >= this.timeManager.hardTime)
+                break;
+            if (moveIterations % MCTSAgent.checkInterval == 1 && shouldStop(elapsed, moveIterations / elapsed))
+                break;
         }
+        endSearch();
+        double elapsed = (System.nanoTime() - startTime) / 1000000000.0;
+        this.timeManager.endMove(elapsed);
+        this.searchTime += elapsed;
+        this.iterations += moveIterations;
         this.moves++;
 
         // Return most visited node's move
@@ -86,11 +113,54 @@ public class MCTSAgent extends Agent {
 
     }
 
+    public double iterationsPerSecond() {
+        return (this.searchTime == 0 ? 0 : this.iterations / this.searchTime);
+    }
+
+    void endSearch() {
+        // Called after the last iteration of a move, before the move is chosen
+    }
+
+    boolean shouldStop(double elapsed, double iterationsPerSecond) {
+        // Finds the two most played children of the root for the time manager
+        Node best = null;
+        int secondPlays = 0;
+        for (Node child : this.rootNode.children) {
+            if (best == null || child.plays > best.plays) {
+                secondPlays = (best == null ? 0 : best.plays);
+                best = child;
+            } else if (child.plays > secondPlays) {
+                secondPlays = child.plays;
+            }
+        }
+        return this.timeManager.shouldStop(this.rootNode.board, elapsed, iterationsPerSecond, (best == null ? 0 : best.move), (best == null ? 0 : best.plays), secondPlays);
+    }
+
+    void iterate() {
+
+        // Selection
+        Node node = select();
+
+        // Expansion
+        if (node.canExpand(this.wideningConstant, this.wideningExponent)) {
+            node = node.expand(this.rand, this.moveClasses, (this.wideningConstant > 0 ? this.scratchBoards.get() : null));
+        }
+
+        // Simulation
+        double result = simulate(node.board);
+
+        // Back-propagation
+        update(node, result);
+        if (this.raveEquivalence > 0)
+            updateRave(node, result);
+
+    }
+
     Node select() {
         Node node = this.rootNode;
 
-        while (!node.canExpand() && !node.children.isEmpty()) {
-            node = node.selectChildUCB();
+        while (!node.canExpand(this.wideningConstant, this.wideningExponent) && !node.children.isEmpty()) {
+            node = node.selectChild(this.selectionPolicy, this.raveEquivalence);
         }
 
         return node;
@@ -98,36 +168,159 @@ public class MCTSAgent extends Agent {
 
     double simulate(Board board) {
 
-        Board boardCopy = board.deepcopy();
-        int move = boardCopy.getNextAcceptableMove(this.rand);
-        while (move != 0 && !boardCopy.gameDecided() && boardCopy.getState() != BoardState.MIDDLE) {
-            boardCopy.registerMove(move);
-            move = boardCopy.getNextAcceptableMove(this.rand);
+        if (this.rewindPlayouts) {
+            // Record undo only for the duration of the playout, the board should not be used by anything else in the meantime
+            // The undo storage is borrowed from the scratch board of this thread, so tree nodes never keep undo storage of their own
+            Board undoBoard = this.scratchBoards.get();
+            boolean recordUndo = board.recordUndo;
+            board.swapUndoStorage(undoBoard);
+            board.recordUndo = true;
+            double result = playout(board);
+            while (board.canUndo()) {
+                board.undo();
+            }
+            board.recordUndo = recordUndo;
+            board.swapUndoStorage(undoBoard);
+            return result;
+        } else {
+            Board boardCopy = this.scratchBoards.get();
+            boardCopy.copyFrom(board);
+            return playout(boardCopy);
         }
 
+    }
+
+    double playout(Board board) {
+        if (this.raveEquivalence > 0) {
+            return MCTSAgent.playout(board, this.rand, this.ann, this.heuristicInput, this.evaluationCache, this.playoutMoves, this.playoutPlayers);
+        } else {
+            return MCTSAgent.playout(board, this.rand, this.ann, this.heuristicInput, this.evaluationCache);
+        }
+    }
+
+    static double playout(Board board, Random rand, ANN ann, Vector heuristicInput) {
+        return MCTSAgent.playout(board, rand, ann, heuristicInput, null, null, null);
+    }
+
+    static double playout(Board board, Random rand, ANN ann, Vector heuristicInput, EvaluationCache cache) {
+        return MCTSAgent.playout(board, rand, ann, heuristicInput, cache, null, null);
+    }
+
+    static double playout(Board board, Random rand, ANN ann, Vector heuristicInput, EvaluationCache cache, int[] playedMoves, int[] playedPlayers) {
+
+        // Plays until the end of the game or until the heuristic can be used, changes the given board
+        // heuristicInput is overwritten, so every thread needs its own
+        // cache can be null
+        playUntilHeuristic(board, rand, playedMoves, playedPlayers);
+
         // Return score
         // 0 means the first player wins, 1 means the second player wins
-        if (boardCopy.getState() == BoardState.MIDDLE) {
+        if (board.getState() == BoardState.MIDDLE) {
             // Estimate score using ANN heuristic
-            double output = this.ann.predict(boardCopy.getHeuristicInput()); // Close to 1 means current player should win, close to -1 means other player should win
-            if (boardCopy.getCurrentPlayer() == 0) {
-                return (-output + 1) / 2;
-            } else {
-                return (output + 1) / 2;
-            }
+            return MCTSAgent.heuristicResult(board.getCurrentPlayer(), MCTSAgent.evaluate(board, ann, heuristicInput, cache));
         } else {
             // We played till the end, just use the board outcome
-            return boardCopy.gameResult();
+            return board.gameResult();
+        }
+
+    }
+
+    static double evaluate(Board board, ANN ann, Vector heuristicInput, EvaluationCache cache) {
+        // Returns the ANN output for board, from the cache if possible
+        // Simple loony endgames get the exact outcome instead, see exactOutput
+        double output = (cache == null ? Double.NaN : cache.get(board.hash()));
+        if (Double.isNaN(output)) {
+            output = MCTSAgent.exactOutput(board);
+            if (Double.isNaN(output)) {
+                board.fillHeuristicInput(heuristicInput.values);
+                output = ann.predict(heuristicInput);
+            }
+            if (cache != null)
+                cache.put(board.hash(), output);
+        }
+        return output;
+    }
+
+    static double exactOutput(Board board) {
+        // Returns the outcome of board like an ANN output, 1 if the current player wins, -1 if it loses and 0 for a tie
+        // Returns NaN if board isn't a simple loony endgame, see EndgameEvaluator
+        int difference = EndgameEvaluator.scoreDifference(board);
+        if (difference == EndgameEvaluator.NO_VALUE)
+            return Double.NaN;
+        return Math.signum(board.getCurrentPlayer() == 0 ? difference : -difference);
+    }
+
+    static void playUntilHeuristic(Board board, Random rand, int[] playedMoves, int[] playedPlayers) {
+
+        // Plays random acceptable moves until the game is decided or the board reaches the middle state, where the heuristic can be used
+        // If playedMoves isn't null, the played moves and the players who played them are written to playedMoves and playedPlayers, followed by move 0
+        int played = 0;
+        int move = board.getNextAcceptableMove(rand);
+        while (move != 0 && !board.gameDecided() && board.getState() != BoardState.MIDDLE) {
+            if (playedMoves != null) {
+                playedMoves[played] = move;
+                playedPlayers[played] = board.getCurrentPlayer();
+                played++;
+            }
+            board.registerMove(move);
+            move = board.getNextAcceptableMove(rand);
         }
+        if (playedMoves != null)
+            playedMoves[played] = 0;
 
     }
 
+    static double heuristicResult(int currentPlayer, double output) {
+        // Converts the ANN output for a board with the given current player to a result like Board.gameResult
+        // Close to 1 means current player should win, close to -1 means other player should win
+        if (currentPlayer == 0) {
+            return (-output + 1) / 2;
+        } else {
+            return (output + 1) / 2;
+        }
+    }
+
     void update(Node node, double result) {
         while (node != null) {
+            double score = Node.getScore(result, this.player);
             node.plays++;
-            node.score += Node.getScore(result, this.player);
+            node.score += score;
+            node.squaredScore += score * score;
             node = node.parent;
         }
     }
 
+    void updateRave(Node leaf, double result) {
+        updateRave(leaf, result, this.playoutMoves, this.playoutPlayers);
+    }
+
+    void updateRave(Node leaf, double result, int[] playedMoves, int[] playedPlayers) {
+
+        // Updates the all-moves-as-first statistics of the children of every node on the path to leaf
+        // A child is updated if the player to move in its parent played the child's move anywhere later in the path or the playout
+        // playedMoves and playedPlayers are the moves of the playout from leaf, see playUntilHeuristic
+
+        double score = Node.getScore(result, this.player);
+        this.raveStamp++;
+        for (int i = 0; playedMoves[i] != 0; i++) {
+            this.raveStamps[playedPlayers[i]][playedMoves[i]] = this.raveStamp;
+        }
+
+        Node node = leaf;
+        while (node != null) {
+            int player = node.board.getCurrentPlayer();
+            for (int i = 0; i < node.children.size(); i++) {
+                Node child = node.children.get(i);
+                if (this.raveStamps[player][child.move] == this.raveStamp) {
+                    child.ravePlays++;
+                    child.raveScore += score;
+                }
+            }
+            if (node.parent != null)
+                this.raveStamps[node.parent.board.getCurrentPlayer()][node.move] = this.raveStamp;
+            node = node.parent;
+        }
+
+    }
+
 }
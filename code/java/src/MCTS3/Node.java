@@ -1,12 +1,12 @@
 package MCTS3;
 
 import board.Board;
+import board.MoveCategory;
 import board.RandomMoveGenerator;
 
-import java.util.*;
+import math.SelectionPolicy;
 
-import static java.lang.Math.log;
-import static java.lang.Math.sqrt;
+import java.util.*;
 
 public class Node {
 
@@ -15,10 +15,15 @@ public class Node {
     public Board board;
     int plays = 0;
     double score = 0.0;
+    double squaredScore = 0.0; // Sum of the squared scores of all plays, for policies that use the variance
+    int ravePlays = 0; // All-moves-as-first statistics of the move leading to this node, see MCTSAgent.updateRave
+    double raveScore = 0.0;
+    int nodes = 1; // Amount of nodes in the subtree of this node, including itself, kept up to date by expand
 
     ArrayList<Node> children;
     RandomMoveGenerator generator; // Should only be initialized in nodes without optimal moves
     int alreadyGeneratedOptimalMove = -1; // Indicates index of optimal move that was already generated
+    int[] priorMoves; // Moves in the order they are expanded with progressive widening, see orderByPrior, null if not used
 
     public Node(Board board, Node parent, int move) {
         this.board = board;
@@ -34,17 +39,42 @@ public class Node {
 
 
     Node selectChildUCB() {
-        Optional<Node> optNode = this.children.stream().max(Comparator.comparing(c -> c.score / c.plays + sqrt(2 * log(this.plays) / c.plays)));
-        try {
-            Node maxNode = optNode.get();
-            return maxNode;
-        } catch (NoSuchElementException e) {
-            return null;
+        return selectChild(SelectionPolicy.UCB1);
+    }
+
+    Node selectChild(SelectionPolicy policy) {
+        return selectChild(policy, 0);
+    }
+
+    Node selectChild(SelectionPolicy policy, double raveEquivalence) {
+        // Returns the child with the highest value according to policy, null if there are no children
+        // If raveEquivalence is positive, the average score of a child is blended with its all-moves-as-first average score first
+        // The weight of the latter is sqrt(raveEquivalence / (3 * plays + raveEquivalence)), so it's 1/2 at raveEquivalence plays
+        // Plain loop without allocations, since this runs at every depth of every iteration
+        Node maxNode = null;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int childrenAmount = this.children.size();
+        double parentTerm = policy.parentTerm(this.plays, childrenAmount);
+        for (int i = 0; i < childrenAmount; i++) {
+            Node child = this.children.get(i);
+            double score = child.score;
+            if (raveEquivalence > 0 && child.ravePlays > 0) {
+                double beta = Math.sqrt(raveEquivalence / (3 * child.plays + raveEquivalence));
+                score = ((1 - beta) * child.score / child.plays + beta * child.raveScore / child.ravePlays) * child.plays;
+            }
+            double value = policy.value(score, child.squaredScore, child.plays, parentTerm, childrenAmount);
+            if (value > maxValue) {
+                maxNode = child;
+                maxValue = value;
+            }
         }
+        return maxNode;
     }
 
     boolean canExpand() {
-        if (this.generator == null) {
+        if (this.priorMoves != null) {
+            return this.children.size() < this.priorMoves.length;
+        } else if (this.generator == null) {
             if (this.board.hasOptimalMoves()) {
                 // Only consider optimal moves
                 return this.children.size() < this.board.getOptimalMoves().length;
@@ -57,9 +87,24 @@ public class Node {
         }
     }
 
-    Node expand(Random rand) {
+    boolean canExpand(double wideningConstant, double wideningExponent) {
+        // With progressive widening (positive wideningConstant), a node without optimal moves can only have ceil(wideningConstant * plays^wideningExponent) children, but at least one
+        // Nodes with optimal moves have at most two children, so they are expanded right away
+        if (wideningConstant > 0 && !this.board.hasOptimalMoves()
+                && this.children.size() >= Math.max(1, Math.ceil(wideningConstant * Math.pow(this.plays, wideningExponent))))
+            return false;
+        return canExpand();
+    }
+
+    Node expand(Random rand, boolean moveClasses) {
+        return expand(rand, moveClasses, null);
+    }
+
+    Node expand(Random rand, boolean moveClasses, Board priorBoard) {
 
         // Creates a new random child and returns it
+        // If moveClasses is true, only one move per class of equivalent moves is expanded, see board.MoveClassIterator
+        // If priorBoard isn't null, moves without optimal moves are expanded in the order of their prior instead, see orderByPrior
 
         if (canExpand()) {
 
@@ -77,10 +122,15 @@ public class Node {
                         move = this.board.getOptimalMoves()[(this.alreadyGeneratedOptimalMove + 1) % 2];
                     }
                 }
+            } else if (priorBoard != null) {
+                // Consider all legal moves, most promising first
+                if (this.priorMoves == null)
+                    orderByPrior(rand, moveClasses, priorBoard);
+                move = this.priorMoves[this.children.size()];
             } else {
                 // Consider all legal moves
                 if (this.generator == null)
-                    this.generator = new RandomMoveGenerator(this.board);
+                    this.generator = new RandomMoveGenerator(this.board, moveClasses);
                 for (int i = 0; i < 100; i++) {
                     move = this.generator.getRandomLegalMoveAsInt(rand);
                     if (this.board.isBad(move)) {
@@ -96,6 +146,9 @@ public class Node {
             childBoard.registerMove(move);
             Node child = new Node(childBoard, this, move);
             this.children.add(child);
+            for (Node node = this; node != null; node = node.parent) {
+                node.nodes++;
+            }
             return child;
 
         } else {
@@ -104,6 +157,54 @@ public class Node {
 
     }
 
+    void orderByPrior(Random rand, boolean moveClasses, Board scratchBoard) {
+
+        // Orders the legal moves of this node from most to least promising, using a prior that is cheap to compute from the board:
+        // - captures first, then safe moves, then moves that offer boxes to the other player, smallest offers first (see Board.getMoveCategory)
+        // - equal moves by the change of the chain parity feature for the player to move (see Board.fillHeuristicInput), which decides who has to open the first long chain
+        // - remaining ties randomly
+        // The chain parity after a move is found by playing the move on scratchBoard, a copy of the board of this node, and undoing it
+        // scratchBoard keeps the undo storage, so the board of this node never allocates any
+
+        // Random order of all moves, or one move per class
+        RandomMoveGenerator moves = new RandomMoveGenerator(this.board, moveClasses);
+        int amount = moves.movesLeft;
+        this.priorMoves = new int[amount];
+        for (int i = 0; i < amount; i++) {
+            this.priorMoves[i] = moves.getRandomLegalMoveAsInt(rand);
+        }
+
+        // Sort keys hold the prior in the high bits and the random position in the low bits, so sorting them keeps ties in random order
+        long[] keys = new long[amount];
+        int player = this.board.getCurrentPlayer();
+        int parity = chainParity(this.board, player);
+        scratchBoard.copyFrom(this.board);
+        boolean recordUndo = scratchBoard.recordUndo;
+        scratchBoard.recordUndo = true;
+        for (int i = 0; i < amount; i++) {
+            int move = this.priorMoves[i];
+            MoveCategory category = this.board.getMoveCategory(move);
+            int rank = (category == MoveCategory.CAPTURE ? 0 : (category == MoveCategory.SAFE ? 1 : 2));
+            scratchBoard.registerMove(move);
+            int parityGain = chainParity(scratchBoard, player) - parity;
+            scratchBoard.undo();
+            long prior = ((long) rank << 16) + ((long) this.board.getSacrificeSize(move) << 2) + (1 - parityGain / 2);
+            keys[i] = (prior << 16) + i;
+        }
+        scratchBoard.recordUndo = recordUndo;
+        Arrays.sort(keys);
+        int[] randomMoves = this.priorMoves.clone();
+        for (int i = 0; i < amount; i++) {
+            this.priorMoves[i] = randomMoves[(int) (keys[i] & 0xFFFF)];
+        }
+
+    }
+
+    static int chainParity(Board board, int player) {
+        // Chain parity feature for the given player, 1 if beneficial and -1 if not, see Board.fillHeuristicInput
+        return ((board.longOpenChains + (board.rows + 1) * (board.columns + 1) + player + 1) % 2) * 2 - 1;
+    }
+
     static double getScore(double result, int player) {
         if (result == 0.5) {
             return result;
@@ -0,0 +1,197 @@
+package MCTS3;
+
+import java.util.Arrays;
+
+public class NodeStore {
+
+    // Stores a search tree as parallel arrays indexed by node ID, see CompactAgent
+    // Nodes don't keep a board, the board of a node is found by replaying the moves on the path from the root
+    // Children of a node form a linked list through firstChild and nextSibling, newest child first
+    // Arrays grow by doubling when they're full up to maxCapacity, nodes are removed by compacting the remaining ones to the lowest IDs
+
+    public static final int NO_NODE = -1;
+    public static final int bytesPerNode = 6 * 4 + 2 * 8 + 1 + 4 + 8; // Including the scratch arrays used for pruning
+    private static final long rootChildKey = 1L << 62; // Added to the prune key of children of the root, so they're only pruned if nothing else is left
+
+    public int[] parent;
+    public int[] firstChild;
+    public int[] nextSibling;
+    public int[] move; // Move that leads from the parent to this node, 0 for the root
+    public int[] plays;
+    public double[] score;
+    public double[] squaredScore; // Sum of the squared scores of all plays, see Node.squaredScore
+    public boolean[] expanded; // Whether or not all children have been created
+    public int[] lastVisit; // Time of the last iteration that went through the node, set by the user of the store, see pruneKey
+    public int size; // Amount of nodes, IDs 0 to size - 1 are used
+    public int maxCapacity = Integer.MAX_VALUE; // Arrays never grow beyond this
+    private int[] newIds; // Scratch space for compact
+    private long[] keys; // Scratch space for prune
+
+    public NodeStore(int capacity) {
+        this.parent = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.move = new int[capacity];
+        this.plays = new int[capacity];
+        this.score = new double[capacity];
+        this.squaredScore = new double[capacity];
+        this.expanded = new boolean[capacity];
+        this.lastVisit = new int[capacity];
+        this.newIds = new int[capacity];
+        this.keys = new long[capacity];
+        this.size = 0;
+    }
+
+    public int capacity() {
+        return this.parent.length;
+    }
+
+    public boolean isFull() {
+        return this.size == this.maxCapacity;
+    }
+
+    public int createNode(int parent, int move) {
+        // Adds a node as the first child of parent (NO_NODE for the root) and returns its ID
+        // Returns NO_NODE without adding anything if the store is full, see prune
+        if (this.size == capacity()) {
+            if (isFull())
+                return NodeStore.NO_NODE;
+            grow((int) Math.min(2L * capacity(), this.maxCapacity));
+        }
+        int node = this.size++;
+        this.parent[node] = parent;
+        this.firstChild[node] = NodeStore.NO_NODE;
+        this.move[node] = move;
+        this.plays[node] = 0;
+        this.score[node] = 0.0;
+        this.squaredScore[node] = 0.0;
+        this.expanded[node] = false;
+        this.lastVisit[node] = (parent != NodeStore.NO_NODE ? this.lastVisit[parent] : 0);
+        if (parent != NodeStore.NO_NODE) {
+            this.nextSibling[node] = this.firstChild[parent];
+            this.firstChild[parent] = node;
+        } else {
+            this.nextSibling[node] = NodeStore.NO_NODE;
+        }
+        return node;
+    }
+
+    public int findChild(int node, int move) {
+        // Returns the child of node reached by move, NO_NODE if it hasn't been created
+        for (int child = this.firstChild[node]; child != NodeStore.NO_NODE; child = this.nextSibling[child]) {
+            if (this.move[child] == move)
+                return child;
+        }
+        return NodeStore.NO_NODE;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public void moveSubtreeToRoot(int root) {
+        // Keeps only the subtree of the given node, which becomes the root with ID 0
+        compact(root, -1);
+    }
+
+    public int prune(int targetSize) {
+
+        // Removes the stalest and least played subtrees until at most targetSize nodes are left (but at least the root), and returns the amount of removed nodes
+        // Nodes are removed in the order of their prune key, which is never larger for a child than for its parent, so removing every node up to a maximum key removes whole subtrees
+        // Children of the root are only removed once all deeper nodes are gone, so the move choice is only affected if targetSize is smaller than the root and its children
+        // Nodes that lose children are marked as not expanded, so they can create them again, their own statistics still include the plays of the removed children
+
+        int removed = this.size - Math.max(1, targetSize);
+        if (removed <= 0)
+            return 0;
+
+        // The removed keys are the smallest ones, ties with the largest of them are removed as well
+        for (int node = 1; node < this.size; node++) {
+            this.keys[node - 1] = pruneKey(node, this.parent[node] == 0);
+        }
+        Arrays.sort(this.keys, 0, this.size - 1);
+        int oldSize = this.size;
+        compact(0, this.keys[removed - 1]);
+        return oldSize - this.size;
+
+    }
+
+    private long pruneKey(int node, boolean rootChild) {
+        // Orders nodes from stalest to most recently visited, and from least to most played if they were last visited at the same time
+        // A parent is visited whenever its child is, so it was never visited earlier and never has less plays
+        // Children of the root are ordered by plays only, after all other nodes
+        if (rootChild)
+            return NodeStore.rootChildKey + this.plays[node];
+        return ((long) this.lastVisit[node] << 31) + this.plays[node];
+    }
+
+    private void compact(int root, long maxRemovedKey) {
+
+        // Keeps the subtree of root, except for nodes below it with a prune key of at most maxRemovedKey (-1 keeps all), root becomes ID 0
+        // Children are always created after their parent, so one pass in order of ID finds the kept nodes, every node moves to an ID at most its own
+        // Child lists are built again in the same pass, in the same newest-first order
+
+        int[] newIds = this.newIds;
+        int newSize = 0;
+        for (int node = root; node < this.size; node++) {
+
+            int newParent = NodeStore.NO_NODE;
+            if (node != root) {
+                int parent = this.parent[node];
+                if (parent < root || newIds[parent] == NodeStore.NO_NODE) {
+                    // Not in the subtree or parent was removed
+                    newIds[node] = NodeStore.NO_NODE;
+                    continue;
+                }
+                newParent = newIds[parent];
+                if (maxRemovedKey >= 0 && pruneKey(node, newParent == 0) <= maxRemovedKey) {
+                    // Remove, parent has to create this child again
+                    newIds[node] = NodeStore.NO_NODE;
+                    this.expanded[newParent] = false;
+                    continue;
+                }
+            }
+
+            // Move node, slot newNode and slot node haven't been used by earlier nodes
+            int newNode = newSize++;
+            newIds[node] = newNode;
+            this.parent[newNode] = newParent;
+            this.move[newNode] = (node == root ? 0 : this.move[node]);
+            this.plays[newNode] = this.plays[node];
+            this.score[newNode] = this.score[node];
+            this.squaredScore[newNode] = this.squaredScore[node];
+            this.expanded[newNode] = this.expanded[node];
+            this.lastVisit[newNode] = this.lastVisit[node];
+            this.firstChild[newNode] = NodeStore.NO_NODE;
+            if (newParent != NodeStore.NO_NODE) {
+                this.nextSibling[newNode] = this.firstChild[newParent];
+                this.firstChild[newParent] = newNode;
+            } else {
+                this.nextSibling[newNode] = NodeStore.NO_NODE;
+            }
+
+        }
+        this.size = newSize;
+
+    }
+
+    public long estimatedBytes() {
+        // Memory used by the arrays, not counting array headers
+        return (long) capacity() * NodeStore.bytesPerNode;
+    }
+
+    private void grow(int capacity) {
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+        this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+        this.move = Arrays.copyOf(this.move, capacity);
+        this.plays = Arrays.copyOf(this.plays, capacity);
+        this.score = Arrays.copyOf(this.score, capacity);
+        this.squaredScore = Arrays.copyOf(this.squaredScore, capacity);
+        this.expanded = Arrays.copyOf(this.expanded, capacity);
+        this.lastVisit = Arrays.copyOf(this.lastVisit, capacity);
+        this.newIds = new int[capacity];
+        this.keys = new long[capacity];
+    }
+
+}
@@ -0,0 +1,80 @@
+package MCTS3;
+
+import main.TimeManager;
+
+public class PonderingAgent extends MCTSAgent {
+
+    // MCTSAgent that keeps searching its tree on a background thread while the opponent is thinking, like MCTS2.AsyncSearchAgent but for any position
+    // When the opponent's move comes in, the search is stopped and the subtree of that move becomes the new root, so the work done for that reply is kept
+    // Pondering has no time limit, so it stops by itself once the tree reaches nodeBudget nodes, and stop() ends it when the game is over
+
+    public static final int defaultNodeBudget = 1 << 20;
+
+    private Thread ponderThread;
+    private volatile boolean pondering;
+    public int ponderIterations = 0;
+    public int nodeBudget; // Pondering pauses when the tree has this many nodes, the search for our own moves is limited by time only
+
+    public PonderingAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, PonderingAgent.defaultNodeBudget);
+    }
+
+    public PonderingAgent(int player, double timeLimit, int rows, int columns, String gameId, int nodeBudget) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.nodeBudget = nodeBudget;
+        // Time saved on easy moves goes to pondering
+        this.timeManager = TimeManager.perMove(this.timeLimit, true);
+    }
+
+    @Override
+    public void registerAction(int ownScore, int opponentScore, int x, int y) {
+        stopPondering();
+        super.registerAction(ownScore, opponentScore, x, y);
+
+        // Ponder if the opponent moves next
+        if (this.rootNode.board.movesLeft > 0 && this.rootNode.board.getCurrentPlayer() != this.player)
+            startPondering();
+    }
+
+    @Override
+    public int[] getNextMove() {
+        stopPondering();
+        return super.getNextMove();
+    }
+
+    @Override
+    public void stop() {
+        stopPondering();
+    }
+
+    private void startPondering() {
+        // The root keeps the size of its subtree, see Node.nodes, so the budget is checked without walking the tree
+        // Subtrees of the moves that weren't played are dropped with the old root, so they don't count anymore
+        if (this.rootNode.nodes >= this.nodeBudget)
+            return;
+        this.pondering = true;
+        this.ponderThread = new Thread(() -> {
+            while (this.pondering && this.rootNode.nodes < this.nodeBudget) {
+                iterate();
+                this.ponderIterations++;
+            }
+        });
+        // Never keep the program running for a game that was abandoned
+        this.ponderThread.setDaemon(true);
+        this.ponderThread.start();
+    }
+
+    private void stopPondering() {
+        // Waits for the running iteration to finish, after that the tree is only used by the calling thread again
+        if (this.ponderThread != null) {
+            this.pondering = false;
+            try {
+                this.ponderThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            this.ponderThread = null;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package MCTS3;
+
+import ann.ANN;
+import main.Agent;
+import main.TimeManager;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class RootParallelAgent extends Agent {
+
+    // Root parallel version of MCTSAgent: every thread searches its own independent tree, so threads never synchronize during search
+    // The visit counts of the root children are summed over all trees to choose the move
+
+    MCTSAgent[] trees; // Every tree has its own random generator, heuristic input and scratch boards
+    public int iterations = 0;
+    public int moves = 0;
+    ThreadPoolExecutor executor;
+
+    public RootParallelAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RootParallelAgent(int player, double timeLimit, int rows, int columns, String gameId, int threads) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.trees = new MCTSAgent[threads];
+        // Predictions are read-only, so all trees use the same ANN, and the same cache since it can be shared by threads
+        ANN ann = ANN.load(MCTSAgent.annPath);
+        EvaluationCache evaluationCache = new EvaluationCache(EvaluationCache.defaultSize);
+        for (int i = 0; i < threads; i++) {
+            this.trees[i] = new MCTSAgent(player, timeLimit, rows, columns, gameId, ann, evaluationCache);
+        }
+        // Idle threads time out between games, daemon threads so they never keep the program running
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void registerAction(int ownScore, int opponentScore, int x, int y) {
+        // Every tree reuses its own subtree
+        for (MCTSAgent tree : this.trees) {
+            tree.registerAction(ownScore, opponentScore, x, y);
+        }
+    }
+
+    @Override
+    public int[] getNextMove() {
+
+        // Search all trees with the soft and hard time of this move, which already include the time margin of this agent
+        // Every tree stops by the rules of the time manager with its own statistics, the move ends when the last tree stops
+        long startTime = System.nanoTime();
+        this.timeManager.startMove(this.trees[0].rootNode.board);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (MCTSAgent tree : this.trees) {
+            tree.timeManager = TimeManager.forMove(this.timeManager);
+            futures.add(this.executor.submit(tree::getNextMove));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.timeManager.endMove((System.nanoTime() - startTime) / 1000000000.0);
+        this.moves++;
+
+        // Sum the visit counts of every move over all trees, indexed by edge ID
+        int[] plays = new int[(2 * this.columns + 1) * (2 * this.rows + 1)];
+        int iterations = 0;
+        for (MCTSAgent tree : this.trees) {
+            for (Node child : tree.rootNode.children) {
+                plays[child.move] += child.plays;
+            }
+            iterations += tree.iterations;
+        }
+        this.iterations = iterations;
+
+        // Return most visited move
+        int bestMove = 0;
+        for (int move = 0; move < plays.length; move++) {
+            if (plays[move] > plays[bestMove])
+                bestMove = move;
+        }
+        return (plays[bestMove] == 0 ? null : this.trees[0].rootNode.board.intToEdge(bestMove));
+
+    }
+
+}
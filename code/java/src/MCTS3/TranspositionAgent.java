@@ -0,0 +1,167 @@
+package MCTS3;
+
+import ann.ANN;
+import board.BitBoard;
+import board.Board;
+import main.Agent;
+import math.SelectionPolicy;
+import math.Vector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class TranspositionAgent extends Agent {
+
+    // Version of MCTSAgent that searches a DAG instead of a tree: positions are stored in a transposition table keyed by their hash, see Board.hash
+    // Expansion links to the existing node if the new position was already reached by another move order
+    // Back-propagation follows the selected path, since nodes can have multiple parents
+
+    TranspositionNode rootNode;
+    HashMap<Long, TranspositionNode> table; // Every node reachable from the root
+    Random rand; // All random decisions are based on this object, so can be seeded for determinism
+    public int iterations = 0;
+    public int moves = 0;
+    public long totalDepth = 0; // Sum of the depths of all simulated nodes
+    public boolean moveClasses = true; // See MCTSAgent.moveClasses
+    public SelectionPolicy selectionPolicy = SelectionPolicy.UCB1; // See MCTSAgent.selectionPolicy
+    ANN ann;
+    Vector heuristicInput = new Vector(new double[Board.heuristicInputSize]);
+    ThreadLocal<Board> scratchBoards;
+    ArrayList<TranspositionNode.Edge> path = new ArrayList<>(); // Edges selected in the current iteration
+
+    public TranspositionAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.rootNode = new TranspositionNode(new BitBoard(columns, rows, false));
+        this.table = new HashMap<>();
+        this.table.put(this.rootNode.board.hash(), this.rootNode);
+        this.rand = new Random();
+        this.ann = ANN.load(MCTSAgent.annPath);
+        this.scratchBoards = ThreadLocal.withInitial(() -> new BitBoard(columns, rows, false));
+    }
+
+    @Override
+    public void registerAction(int ownScore, int opponentScore, int x, int y) {
+
+        // Find the node of the new position, through the root edges or the table, or create a new one
+        int move = this.rootNode.board.edgeToInt(x, y);
+        TranspositionNode newRoot = null;
+        for (TranspositionNode.Edge edge : this.rootNode.edges) {
+            if (edge.move == move) {
+                newRoot = edge.child;
+                break;
+            }
+        }
+        if (newRoot == null) {
+            Board newBoard = this.rootNode.board.deepcopy();
+            newBoard.registerMove(move);
+            newRoot = this.table.get(newBoard.hash());
+            if (newRoot == null)
+                newRoot = new TranspositionNode(newBoard);
+        }
+        this.rootNode = newRoot;
+
+        // Drop the nodes that can't be reached anymore
+        HashMap<Long, TranspositionNode> newTable = new HashMap<>();
+        ArrayDeque<TranspositionNode> stack = new ArrayDeque<>();
+        newTable.put(newRoot.board.hash(), newRoot);
+        stack.push(newRoot);
+        while (!stack.isEmpty()) {
+            for (TranspositionNode.Edge edge : stack.pop().edges) {
+                if (newTable.put(edge.child.board.hash(), edge.child) == null)
+                    stack.push(edge.child);
+            }
+        }
+        this.table = newTable;
+
+    }
+
+    @Override
+    public int[] getNextMove() {
+
+        // Search until the hard time, or until the time manager decides to stop, see MCTSAgent.getNextMove
+        long startTime = System.nanoTime();
+        this.timeManager.startMove(this.rootNode.board);
+        int moveIterations = 0;
+        while (true) {
+            iterate();
+            this.iterations++;
+            moveIterations++;
+            double elapsed = (System.nanoTime() - startTime) / 1000000000.0;
+            if (elapsed >= this.timeManager.hardTime)
+                break;
+            if (moveIterations % MCTSAgent.checkInterval == 1 && shouldStop(elapsed, moveIterations / elapsed))
+                break;
+        }
+        this.timeManager.endMove((System.nanoTime() - startTime) / 1000000000.0);
+        this.moves++;
+
+        // Return most played edge's move
+        TranspositionNode.Edge bestEdge = null;
+        for (TranspositionNode.Edge edge : this.rootNode.edges) {
+            if (bestEdge == null || edge.plays > bestEdge.plays)
+                bestEdge = edge;
+        }
+        return (bestEdge == null ? null : this.rootNode.board.intToEdge(bestEdge.move));
+
+    }
+
+    boolean shouldStop(double elapsed, double iterationsPerSecond) {
+        // Same as MCTSAgent.shouldStop, with the edges of the root
+        TranspositionNode.Edge best = null;
+        int secondPlays = 0;
+        for (TranspositionNode.Edge edge : this.rootNode.edges) {
+            if (best == null || edge.plays > best.plays) {
+                secondPlays = (best == null ? 0 : best.plays);
+                best = edge;
+            } else if (edge.plays > secondPlays) {
+                secondPlays = edge.plays;
+            }
+        }
+        return this.timeManager.shouldStop(this.rootNode.board, elapsed, iterationsPerSecond, (best == null ? 0 : best.move), (best == null ? 0 : best.plays), secondPlays);
+    }
+
+    void iterate() {
+
+        // Selection and expansion
+        // Expanding into a node that already exists continues the selection from that node, since it already has statistics
+        this.path.clear();
+        TranspositionNode node = this.rootNode;
+        while (true) {
+            if (node.canExpand()) {
+                TranspositionNode.Edge edge = node.expand(this.rand, this.moveClasses, this.table);
+                this.path.add(edge);
+                node = edge.child;
+                if (node.plays == 0)
+                    break;
+            } else if (node.edges.isEmpty()) {
+                // Game over in this node
+                break;
+            } else {
+                TranspositionNode.Edge edge = node.selectEdge(this.selectionPolicy);
+                this.path.add(edge);
+                node = edge.child;
+            }
+        }
+        this.totalDepth += this.path.size();
+
+        // Simulation
+        Board boardCopy = this.scratchBoards.get();
+        boardCopy.copyFrom(node.board);
+        double score = Node.getScore(MCTSAgent.playout(boardCopy, this.rand, this.ann, this.heuristicInput), this.player);
+
+        // Back-propagation along the path
+        this.rootNode.plays++;
+        this.rootNode.score += score;
+        this.rootNode.squaredScore += score * score;
+        for (TranspositionNode.Edge edge : this.path) {
+            edge.plays++;
+            edge.child.plays++;
+            edge.child.score += score;
+            edge.child.squaredScore += score * score;
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package MCTS3;
+
+import board.Board;
+import board.RandomMoveGenerator;
+
+import math.SelectionPolicy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class TranspositionNode {
+
+    // Node of a search DAG, see TranspositionAgent
+    // A position reached by different move orders has a single node, so its statistics are shared by all parents
+    // Every edge from a parent to a child has its own amount of plays, which is used for exploration instead of the plays of the child
+
+    static class Edge {
+        int move;
+        TranspositionNode child;
+        int plays = 0;
+
+        Edge(int move, TranspositionNode child) {
+            this.move = move;
+            this.child = child;
+        }
+    }
+
+    public Board board;
+    int plays = 0;
+    double score = 0.0;
+    double squaredScore = 0.0; // See Node.squaredScore
+
+    ArrayList<Edge> edges;
+    RandomMoveGenerator generator; // Should only be initialized in nodes without optimal moves
+    int alreadyGeneratedOptimalMove = -1; // Indicates index of optimal move that was already generated
+
+    public TranspositionNode(Board board) {
+        this.board = board;
+        this.edges = new ArrayList<>();
+        this.generator = null;
+    }
+
+    Edge selectEdge(SelectionPolicy policy) {
+        // Like Node.selectChild, but the statistics of the child are combined with the plays of the edge
+        // The sums of the child are scaled to the plays of the edge, so the policy sees the mean and variance of the child with the plays of the edge
+        Edge maxEdge = null;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        int edgesAmount = this.edges.size();
+        double parentTerm = policy.parentTerm(this.plays, edgesAmount);
+        for (int i = 0; i < edgesAmount; i++) {
+            Edge edge = this.edges.get(i);
+            TranspositionNode child = edge.child;
+            double scale = (double) edge.plays / child.plays;
+            double value = policy.value(child.score * scale, child.squaredScore * scale, edge.plays, parentTerm, edgesAmount);
+            if (value > maxValue) {
+                maxEdge = edge;
+                maxValue = value;
+            }
+        }
+        return maxEdge;
+    }
+
+    boolean canExpand() {
+        // See Node.canExpand
+        if (this.generator == null) {
+            if (this.board.hasOptimalMoves()) {
+                return this.edges.size() < this.board.getOptimalMoves().length;
+            } else {
+                return this.board.movesLeft > 0;
+            }
+        } else {
+            return this.generator.hasMovesLeft();
+        }
+    }
+
+    Edge expand(Random rand, boolean moveClasses, HashMap<Long, TranspositionNode> table) {
+
+        // Creates a new edge for a random move and returns it
+        // If the position after the move is already in the table, the edge leads to that node, otherwise a new node is created and added to the table
+
+        if (canExpand()) {
+
+            // Generate move, see Node.expand
+            int move = 0;
+            if (this.board.hasOptimalMoves()) {
+                if (this.board.optimalMoves.length == 1) {
+                    move = this.board.getOptimalMoves()[0];
+                } else {
+                    if (this.alreadyGeneratedOptimalMove == -1) {
+                        this.alreadyGeneratedOptimalMove = rand.nextInt(2);
+                        move = this.board.getOptimalMoves()[this.alreadyGeneratedOptimalMove];
+                    } else {
+                        move = this.board.getOptimalMoves()[(this.alreadyGeneratedOptimalMove + 1) % 2];
+                    }
+                }
+            } else {
+                if (this.generator == null)
+                    this.generator = new RandomMoveGenerator(this.board, moveClasses);
+                for (int i = 0; i < 100; i++) {
+                    move = this.generator.getRandomLegalMoveAsInt(rand);
+                    if (this.board.isBad(move)) {
+                        this.generator.reverseMove(move);
+                    } else {
+                        break;
+                    }
+                }
+            }
+
+            // Find or create child
+            Board childBoard = this.board.deepcopy();
+            childBoard.registerMove(move);
+            TranspositionNode child = table.get(childBoard.hash());
+            if (child == null) {
+                child = new TranspositionNode(childBoard);
+                table.put(childBoard.hash(), child);
+            }
+            Edge edge = new Edge(move, child);
+            this.edges.add(edge);
+            return edge;
+
+        } else {
+            return null;
+        }
+
+    }
+
+}
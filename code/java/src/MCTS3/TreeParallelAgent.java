@@ -0,0 +1,215 @@
+package MCTS3;
+
+import ann.ANN;
+import board.BitBoard;
+import board.Board;
+import main.Agent;
+import math.SelectionPolicy;
+import math.Vector;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TreeParallelAgent extends Agent {
+
+    public static final int checkMillis = 10; // Time in between checks of the time manager
+
+    // Tree parallel version of MCTSAgent: multiple worker threads search the same tree at the same time
+    // Threads only synchronize on expansion of a node, statistics are updated atomically and virtual loss keeps threads from all following the same path, see ConcurrentNode
+
+    ConcurrentNode rootNode;
+    Random rand; // Only used to seed the workers
+    public int iterations = 0;
+    public int moves = 0;
+    public final int threads;
+    public boolean moveClasses = true; // See MCTSAgent.moveClasses
+    public SelectionPolicy selectionPolicy = SelectionPolicy.UCB1; // See MCTSAgent.selectionPolicy
+    ANN ann; // Only read during search, so shared by all workers
+    public EvaluationCache evaluationCache = new EvaluationCache(EvaluationCache.defaultSize); // Shared by all workers, null disables caching
+    Worker[] workers;
+    ThreadPoolExecutor executor;
+
+    public TreeParallelAgent(int player, double timeLimit, int rows, int columns, String gameId) {
+        this(player, timeLimit, rows, columns, gameId, Runtime.getRuntime().availableProcessors());
+    }
+
+    public TreeParallelAgent(int player, double timeLimit, int rows, int columns, String gameId, int threads) {
+        super(player, timeLimit, rows, columns, gameId);
+        this.rootNode = new ConcurrentNode(new BitBoard(columns, rows, false));
+        this.rand = new Random();
+        this.threads = threads;
+        this.ann = ANN.load(MCTSAgent.annPath);
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            this.workers[i] = new Worker(new Random(this.rand.nextLong()));
+        }
+        // Idle threads time out between games, daemon threads so they never keep the program running
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void registerAction(int ownScore, int opponentScore, int x, int y) {
+
+        // Same as MCTSAgent.registerAction, no search is running at this point
+        int move = this.rootNode.board.edgeToInt(x, y);
+        ConcurrentNode newRoot = null;
+        for (int i = 0; i < this.rootNode.childrenAmount; i++) {
+            if (this.rootNode.children[i].move == move)
+                newRoot = this.rootNode.children[i];
+        }
+        if (newRoot != null) {
+            newRoot.parent = null;
+            newRoot.move = 0;
+        } else {
+            Board newBoard = this.rootNode.board.deepcopy();
+            newBoard.registerMove(move);
+            newRoot = new ConcurrentNode(newBoard);
+        }
+        this.rootNode = newRoot;
+
+    }
+
+    @Override
+    public int[] getNextMove() {
+
+        // Run all workers until the hard time and wait for them to finish
+        // While waiting, the time manager is checked every checkMillis, if it decides to stop the end time of the workers is moved to now
+        long startTime = System.nanoTime();
+        int startPlays = this.rootNode.plays;
+        this.timeManager.startMove(this.rootNode.board);
+        long endTime = startTime + (long) (this.timeManager.hardTime * 1000000000);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (Worker worker : this.workers) {
+            worker.endTime = endTime;
+            futures.add(this.executor.submit(worker));
+        }
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    if (this.timeManager.stopEarly)
+                        future.get(TreeParallelAgent.checkMillis, TimeUnit.MILLISECONDS);
+                    else
+                        future.get();
+                    break;
+                } catch (TimeoutException e) {
+                    double elapsed = (System.nanoTime() - startTime) / 1000000000.0;
+                    if (shouldStop(elapsed, (this.rootNode.plays - startPlays) / elapsed)) {
+                        long now = System.nanoTime();
+                        for (Worker worker : this.workers) {
+                            worker.endTime = now;
+                        }
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        this.timeManager.endMove((System.nanoTime() - startTime) / 1000000000.0);
+        for (Worker worker : this.workers) {
+            this.iterations += worker.iterations;
+            worker.iterations = 0;
+        }
+        this.moves++;
+
+        // Return most visited node's move
+        ConcurrentNode bestChild = null;
+        for (int i = 0; i < this.rootNode.childrenAmount; i++) {
+            ConcurrentNode child = this.rootNode.children[i];
+            if (bestChild == null || child.plays > bestChild.plays)
+                bestChild = child;
+        }
+        return (bestChild == null ? null : this.rootNode.board.intToEdge(bestChild.move));
+
+    }
+
+    boolean shouldStop(double elapsed, double iterationsPerSecond) {
+        // Same as MCTSAgent.shouldStop, the workers keep changing the statistics in the meantime
+        ConcurrentNode best = null;
+        int secondPlays = 0;
+        for (int i = 0; i < this.rootNode.childrenAmount; i++) {
+            ConcurrentNode child = this.rootNode.children[i];
+            if (best == null || child.plays > best.plays) {
+                secondPlays = (best == null ? 0 : best.plays);
+                best = child;
+            } else if (child.plays > secondPlays) {
+                secondPlays = child.plays;
+            }
+        }
+        return this.timeManager.shouldStop(this.rootNode.board, elapsed, iterationsPerSecond, (best == null ? 0 : best.move), (best == null ? 0 : best.plays), secondPlays);
+    }
+
+    ConcurrentNode select(Random rand) {
+
+        // Selects a node and expands it if possible, adding a virtual loss to every node on the path
+        ConcurrentNode node = this.rootNode;
+        node.addPlay();
+        while (true) {
+            if (!node.expanded) {
+                ConcurrentNode child = node.expand(rand, this.moveClasses);
+                if (child != null)
+                    return child;
+            }
+            if (node.childrenAmount == 0) {
+                // Game over in this node
+                return node;
+            }
+            node = node.selectChild(selectionPolicy);
+            node.addPlay();
+        }
+
+    }
+
+    void update(ConcurrentNode node, double result) {
+        // Plays were already added during selection
+        while (node != null) {
+            node.addScore(Node.getScore(result, this.player));
+            node = node.parent;
+        }
+    }
+
+    class Worker implements Runnable {
+
+        // Search thread with its own random generator, heuristic input and scratch board
+
+        Random rand;
+        Vector heuristicInput = new Vector(new double[Board.heuristicInputSize]);
+        Board scratchBoard = new BitBoard(columns, rows, false);
+        volatile long endTime;
+        int iterations = 0;
+
+        Worker(Random rand) {
+            this.rand = rand;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < this.endTime) {
+
+                // Selection and expansion
+                ConcurrentNode node = select(this.rand);
+
+                // Simulation
+                this.scratchBoard.copyFrom(node.board);
+                double result = MCTSAgent.playout(this.scratchBoard, this.rand, ann, this.heuristicInput, evaluationCache);
+
+                // Back-propagation
+                update(node, result);
+
+                this.iterations++;
+            }
+        }
+
+    }
+
+}
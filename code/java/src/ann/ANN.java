@@ -136,6 +136,47 @@ public class ANN {
 
     }
 
+    public void predictBatch(double[][] inputs, int amount, double[] outputs) {
+        predictBatch(inputs, amount, outputs, new double[amount][this.hiddenWeights.height]);
+    }
+
+    public void predictBatch(double[][] inputs, int amount, double[] outputs, double[][] hidden) {
+
+        // Predicts the outputs of the first amount input vectors at once and writes them to outputs, same results as predict
+        // Like in predict, the input rows are normalized in place, so callers have to refill them before predicting them again
+        // hidden is scratch space for the hidden layer with at least amount rows of hiddenWeights.height values, so callers that predict often can reuse it
+        // The batch is multiplied with one row of hidden weights at a time, so every row is read once per batch instead of once per input
+
+        int inputSize = this.hiddenWeights.width;
+        int hiddenSize = this.hiddenWeights.height;
+        for (int b = 0; b < amount; b++) {
+            new Vector(inputs[b]).normalize();
+            Arrays.fill(hidden[b], 0, hiddenSize, 0.0);
+        }
+
+        // Hidden layer
+        for (int j = 0; j < inputSize; j++) {
+            double[] weights = this.hiddenWeights.values[j];
+            for (int b = 0; b < amount; b++) {
+                double input = inputs[b][j];
+                double[] sums = hidden[b];
+                for (int i = 0; i < hiddenSize; i++) {
+                    sums[i] += weights[i] * input;
+                }
+            }
+        }
+
+        // Output layer
+        for (int b = 0; b < amount; b++) {
+            double sum = 0;
+            for (int i = 0; i < hiddenSize; i++) {
+                sum += this.outputWeights.values[i][0] * ANN.activation(hidden[b][i]);
+            }
+            outputs[b] = ANN.activation(sum);
+        }
+
+    }
+
     public void train(Example[] trainingSet, Example[] validationSet, String annBasePath, String annPerformancePath) {
 
         // Trains this ann.ANN on the given array of examples
@@ -310,6 +351,17 @@ public class ANN {
         model.train(trainingSet, null, null, null);
         ANN.printRMSEs(model, trainingSet, validationSet);
 
+        // Batch prediction should give the same outputs
+        double[][] inputs = new double[validationSet.length][];
+        double[] outputs = new double[validationSet.length];
+        for (int i = 0; i < validationSet.length; i++)
+            inputs[i] = validationSet[i].input.values.clone();
+        model.predictBatch(inputs, inputs.length, outputs);
+        double maxDifference = 0;
+        for (int i = 0; i < validationSet.length; i++)
+            maxDifference = Math.max(maxDifference, Math.abs(outputs[i] - model.predict(validationSet[i].input)));
+        System.out.println("Maximum difference between batch and single predictions: " + maxDifference);
+
     }
 
     public static Example[] generateExamples(int amount, int inputSize, ANN real) {
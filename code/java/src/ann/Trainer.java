@@ -1,8 +1,11 @@
 package ann;
 
 import MCTS2.MCTSAgent;
+import board.BitBoard;
 import board.Board;
+import board.BoardCodec;
 import board.BoardState;
+import board.Symmetry;
 import main.Agent;
 import main.AlphaBeta;
 import math.CustomMath;
@@ -16,6 +19,7 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Random;
 
 public class Trainer {
@@ -45,6 +49,7 @@ public class Trainer {
 
         Random rand = new Random(seed);
         double totalSolvingTime = 0;
+        HashSet<Long> solvedPositions = new HashSet<>(); // Canonical hashes of positions solved so far, so symmetric positions are only solved once
 
         for (int game = 0; game < gamesAmount; game++) {
 
@@ -57,6 +62,11 @@ public class Trainer {
                 // Simulate game
                 System.out.println("Simulating game " + game + " with " + columns + " columns, " + rows + " rows");
                 Board board = Trainer.simulateRandomGame(columns, rows);
+                if (!solvedPositions.add(Symmetry.forBoard(board).canonicalHash(board))) {
+                    // Same position (up to symmetry) was solved already, retry
+                    System.out.println("Position was solved already");
+                    continue;
+                }
 
                 // Solve game
                 long start = System.nanoTime();
@@ -77,34 +87,9 @@ public class Trainer {
                     } catch (NoSuchFileException e) {
                         original = new byte[0];
                     }
-                    ByteBuffer buffer = ByteBuffer.allocate(original.length + 5 * 4 + (int) Math.ceil((double) (2 * columns * rows + columns + rows) / 8) + 4);
+                    ByteBuffer buffer = ByteBuffer.allocate(original.length + BoardCodec.encodedSize(columns, rows) + 4);
                     buffer.put(original, 0, original.length);
-                    buffer.putInt(columns);
-                    buffer.putInt(rows);
-                    buffer.putInt(board.getCurrentPlayer());
-                    buffer.putInt(board.scores[0]);
-                    buffer.putInt(board.scores[1]);
-                    // Write edges, bit by bit
-                    int x = 0;
-                    int y = 1;
-                    for (int i = 0; i < (int) Math.ceil((double) (2 * columns * rows + columns + rows) / 8); i++) {
-                        byte value = 0;
-                        for (int bit = 0; bit < 8; bit++) {
-                            // If edge is there, set bit to true
-                            if (board.edges[x][y])
-                                value = (byte) (value | (1 << bit));
-
-                            // Go to next edge
-                            y += 2;
-                            if (y >= 2 * rows + 1) {
-                                x++;
-                                y = (x + 1) % 2;
-                                if (x >= 2 * columns + 1)
-                                    break;
-                            }
-                        }
-                        buffer.put(value);
-                    }
+                    BoardCodec.write(buffer, board);
                     buffer.putInt(res);
 
                     // We create a separate file and rename it because of atomicity
@@ -134,7 +119,7 @@ public class Trainer {
 
             // Keep simulating games until you don't fill out the entire board
 
-            Board board = new Board(columns, rows, false); // We don't record undo during simulation, only solving
+            Board board = new BitBoard(columns, rows, false); // We don't record undo during simulation, only solving
             double timeLimit = 0.005;
 
             // Initialization
@@ -167,54 +152,17 @@ public class Trainer {
 
             // Read file
             byte[] bytes = Files.readAllBytes(Paths.get(path));
-            ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
-            buffer.put(bytes);
-            buffer.rewind();
-            int bytesLeft = bytes.length;
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
 
             // Load games
             ArrayList<Example> examples = new ArrayList<>();
             Random rand = new Random();
-            while (bytesLeft > 0) {
-
-                // Load game data
-                int columns = buffer.getInt();
-                int rows = buffer.getInt();
-                int currentPlayer = buffer.getInt();
-                int score0 = buffer.getInt();
-                int score1 = buffer.getInt();
-                bytesLeft -= 5 * 4;
-
-                // Load edges, bit by bit
-                Board board = new Board(columns, rows, false);
-                // Write edges, bit by bit
-                int x = 0;
-                int y = 1;
-                for (int i = 0; i < (int) Math.ceil((double) (2 * columns * rows + columns + rows) / 8); i++) {
-                    byte value = buffer.get();
-                    bytesLeft -= 1;
-                    for (int bit = 0; bit < 8; bit++) {
-                        // If edge is there, set bit to true
-                        if (((value >> bit) & 1) == 1)
-                            board.registerMove(x, y);
-
-                        // Go to next edge
-                        y += 2;
-                        if (y >= 2 * rows + 1) {
-                            x++;
-                            y = (x + 1) % 2;
-                            if (x >= 2 * columns + 1)
-                                break;
-                        }
-                    }
-                }
-                int res = buffer.getInt();
-                bytesLeft -= 4;
+            while (buffer.hasRemaining()) {
 
-                // Fix scores and current player
-                board.currentPlayer = currentPlayer;
-                board.scores[0] = score0;
-                board.scores[1] = score1;
+                // Load game data, the board is rebuilt directly from the edges instead of replaying them
+                Board board = BoardCodec.read(buffer);
+                int currentPlayer = board.getCurrentPlayer();
+                int res = buffer.getInt();
 
                 // res now indicates if the current player loses (-1), ties (0) or wins (1)
                 if (currentPlayer == 1) {
@@ -290,7 +238,7 @@ public class Trainer {
 
         // Creates new random ANN with correct topology and saves it
         // Guideline for hidden size comes from https://stats.stackexchange.com/questions/181/how-to-choose-the-number-of-hidden-layers-and-nodes-in-a-feedforward-neural-netw
-        int inputSize = (new Board(1, 1, false)).getHeuristicInput().height;
+        int inputSize = Board.heuristicInputSize;
         int outputSize = 1;
         ANN ann = new ANN(inputSize, (inputSize + outputSize) / 2);
         ann.save(path);
@@ -0,0 +1,71 @@
+package board;
+
+public class BitBoard extends Board {
+
+    // Board with the edge matrix packed into bit masks instead of a boolean matrix
+    // Every column of the edge coordinate system is stored in wordsPerColumn longs, bit y of the column being edge (x, y)
+    // Legal moves per column are counted with popcounts instead of being tracked in movesLeftPerColumn, random moves come from openEdges like in Board
+    // All chain logic is inherited from Board, only the edge storage differs
+
+    public int wordsPerColumn;
+    public long[] edgeMasks; // Bit set means a line has been drawn, indexed by x * wordsPerColumn + y / 64
+    public long[] validMasks; // Bits of actual edges (rather than nodes or boxes) in even and odd columns, indexed by (x % 2) * wordsPerColumn + y / 64
+
+    public BitBoard(int columns, int rows, boolean recordUndo) {
+        super(columns, rows, recordUndo);
+    }
+
+    @Override
+    public BitBoard deepcopy() {
+        BitBoard newBoard = new BitBoard(this.columns, this.rows, this.recordUndo);
+        newBoard.copyFrom(this);
+        return newBoard;
+    }
+
+    // Edge storage
+
+    @Override
+    protected void initEdges() {
+        this.wordsPerColumn = (2 * this.rows + 1 + 63) / 64;
+        this.edgeMasks = new long[(2 * this.columns + 1) * this.wordsPerColumn];
+        this.validMasks = new long[2 * this.wordsPerColumn];
+        for (int parity = 0; parity < 2; parity++) {
+            for (int y = (parity + 1) % 2; y < 2 * this.rows + 1; y += 2) {
+                this.validMasks[parity * this.wordsPerColumn + y / 64] |= 1L << y;
+            }
+        }
+    }
+
+    @Override
+    protected void copyEdgesTo(Board newBoard) {
+        BitBoard newBitBoard = (BitBoard) newBoard;
+        System.arraycopy(this.edgeMasks, 0, newBitBoard.edgeMasks, 0, this.edgeMasks.length);
+    }
+
+    @Override
+    public boolean hasEdge(int x, int y) {
+        return (this.edgeMasks[x * this.wordsPerColumn + (y >>> 6)] & (1L << y)) != 0;
+    }
+
+    @Override
+    protected void setEdge(int x, int y) {
+        this.edgeMasks[x * this.wordsPerColumn + (y >>> 6)] |= 1L << y;
+    }
+
+    @Override
+    protected void clearEdge(int x, int y) {
+        this.edgeMasks[x * this.wordsPerColumn + (y >>> 6)] &= ~(1L << y);
+    }
+
+    @Override
+    public int movesLeftInColumn(int x) {
+        int res = 0;
+        int base = x * this.wordsPerColumn;
+        int validBase = (x % 2) * this.wordsPerColumn;
+        for (int word = 0; word < this.wordsPerColumn; word++) {
+            res += Long.bitCount(this.validMasks[validBase + word] & ~this.edgeMasks[base + word]);
+        }
+        return res;
+    }
+
+}
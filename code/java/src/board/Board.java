@@ -17,12 +17,17 @@ public class Board {
     // These don't actually limit chains on the board, just how they are presented to the heuristic
     public static final int maxOpenChainSize = 18;
     public static final int maxLoopSize = 10;
+    public static final int heuristicInputSize = 2 + Board.maxOpenChainSize + (Board.maxLoopSize - 2) / 2 + 1;
+
+    public static final int NO_CHAIN = -1;
 
     // General
     public final int columns, rows;
     public boolean recordUndo;
     public int currentPlayer = 0;
     public int[] scores = new int[2];
+    public Zobrist zobrist; // Shared by all boards of this size
+    public long hash; // Zobrist hash of the edges, side to move and score difference, use hash() from outside
 
     // Temporary variables used during calculations, doesn't store state across multiple moves
     public boolean boxClosed; // Whether or not a box was closed during this move
@@ -30,20 +35,81 @@ public class Board {
     public boolean openedChain; // Created half-open or closed chain
 
     // Board representation
-    public boolean[][] edges; // false means no line has been drawn yet
+    public boolean[][] edges; // false means no line has been drawn yet, null for subclasses with their own edge storage, use hasEdge from outside
     public int[][] valence; // Amount of lines next to box, starts at 0
-    public Chain[][] chainAt; // Stores the chain each box belongs to, null for boxes with valence 0, 1, or 4, not null for all boxes with valence 2 or 3
-    public HashSet<Chain> chains; // Mostly used for adding/removing instead of iteration, so HashSet instead of ArrayList
+    public int[] chainAt; // Stores the ID of the chain each box (see boxToInt) belongs to, NO_CHAIN for boxes with valence 0, 1, or 4, a chain for all boxes with valence 2 or 3
     public BoardState state;
 
+    // Chains
+    // Chains live in a pool owned by the board and are addressed by their ID, which indexes the arrays below
+    // The boxes of a chain are stored in order in a ring buffer deque: chainBoxes[chain], starting at chainStart[chain]
+    // For half-open chains: deque must start with box of valence 3
+    // For loops: any starting point is valid
+    // Active chains form a doubly linked list through nextChain and previousChain, used for iteration
+    public ChainType[] chainType;
+    public int[] chainSize;
+    public int[] chainStart;
+    public int[][] chainBoxes; // Deque buffers of length chainCapacity, allocated the first time their ID is used
+    public int chainCapacity; // Power of 2 large enough to hold all boxes of the board
+    public int[] nextChain, previousChain;
+    public int firstChain = Board.NO_CHAIN;
+    public int chainsAmount; // Amount of active chains
+    public int[] freeChains; // Stack of unused chain IDs
+    public int freeChainsAmount;
+    protected int[] rotationBuffer; // Temporary storage for rotating loops
+
+    // Heuristic features
+    // Kept up to date for all chains in the chain list by the chain pool methods, see countChain
+    public int[] openChainsPerSize; // Amount of open chains per size, larger chains are counted at maxOpenChainSize
+    public int[] loopsPerHalfSize; // Amount of loops per size / 2, larger loops are counted at maxLoopSize / 2
+    public int longOpenChains; // Amount of open chains of size 3 or more, used for chain parity
+
     // Moves
     public int movesLeft;
-    public int[] movesLeftPerColumn; // Used to quickly iterate and random-access moves
+    public int[] movesLeftPerColumn; // Used to quickly iterate moves per column, use movesLeftInColumn from outside
+    public int[] openEdges; // IDs of all legal moves in the first movesLeft positions, in no particular order, used to random-access moves
+    public int[] openEdgeIndex; // Position of every edge ID in openEdges, for drawn edges the position they had when they were removed
     public int[] optimalMoves;
+    public int safeMovesLeft; // Amount of legal moves that don't give the third line to a box, see getMoveCategory
+    public int[] safeEdges; // IDs of all safe moves in the first safeMovesLeft positions, kept like openEdges
+    public int[] safeEdgeIndex; // Position of every edge ID in safeEdges, for edges that aren't safe the position they had when they were removed
 
     // Undo
-    public Transaction currentTransaction;
-    public ArrayList<Transaction> undoStack;
+    // Every move pushes a frame with its main data on undoFrames and its chain updates as entries on undoJournal
+    // Journal entries consist of their operands followed by their opcode, so they can be read backwards
+    // Links are the previous and next chain of a removed chain in the chain list, see pushUndoLinks
+    // All arrays are allocated once per board and are large enough for every move on it, so recording undo doesn't allocate per move
+    public int undoDepth; // Amount of moves that can be undone
+    public int[] undoFrames; // UNDO_FRAME_SIZE ints per move, see beginUndoFrame
+    public int[][] undoOptimalMoves; // Optimal moves before each move, not copied since Board creates a new array every update anyway
+    public long[] undoHashes; // Hash before each move
+    public int[] undoJournal;
+    public int undoJournalSize;
+
+    protected static final BoardState[] boardStates = BoardState.values();
+    protected static final ChainType[] chainTypes = ChainType.values();
+
+    // Undo frame layout
+    protected static final int UNDO_FRAME_SIZE = 10;
+    protected static final int FRAME_X = 0, FRAME_Y = 1, FRAME_STATE = 2, FRAME_PLAYER = 3, FRAME_SCORE0 = 4, FRAME_SCORE1 = 5,
+            FRAME_JOURNAL = 6, FRAME_BOXES_AMOUNT = 7, FRAME_BOXES = 8;
+
+    // Undo journal opcodes, every comment lists the operands of the entry in the order they are pushed
+    protected static final int UNDO_NEW_CHAIN = 0; // chain, box: chain was created for box
+    protected static final int UNDO_APPEND = 1; // chain, box: box was appended to chain
+    protected static final int UNDO_PREPEND = 2; // chain, box: box was prepended to chain
+    protected static final int UNDO_MAKE_LOOP = 3; // chain, box: box was appended to open chain, closing it into a loop
+    protected static final int UNDO_MERGE_HALF_OPEN = 4; // links of chain2, chain1, chain2, box, size of chain2, 2 * old type of chain2 + reversed: box and chain2 were appended to half-open chain1
+    protected static final int UNDO_MERGE_PREPEND = 5; // links of chain2, chain1, chain2, box, size of chain2, 2 * old type of chain2 + reversed: box and chain2 were prepended to open chain1
+    protected static final int UNDO_MERGE_APPEND = 6; // links of chain2, chain1, chain2, box, size of chain2, 2 * old type of chain2 + reversed: box and chain2 were appended to open chain1
+    protected static final int UNDO_SET_TYPE = 7; // chain, old type: type of chain was changed
+    protected static final int UNDO_REVERSE = 8; // chain: open chain was reversed and became half-open
+    protected static final int UNDO_SPLIT = 9; // chain, new chain, 2 * old type + reversed: end of chain was moved to new chain, first part was reversed if reversed is 1
+    protected static final int UNDO_ROTATE = 10; // chain, shift: loop was rotated and became closed
+    protected static final int UNDO_REMOVE_START = 11; // chain, box: first box was removed from chain
+    protected static final int UNDO_REMOVE_END = 12; // chain, box: last box was removed from chain
+    protected static final int UNDO_REMOVE_CHAIN = 13; // boxes of chain, links of chain, size, type, chain: chain was removed from the board
+    protected static final int UNDO_MAX_ENTRY_SIZE = 8; // Removed chains have at most 2 boxes, since a single line can't close more
 
     // Interface methods
 
@@ -54,20 +120,48 @@ public class Board {
         this.recordUndo = recordUndo;
 
         // Board representation initialization
-        this.edges = new boolean[2 * columns + 1][2 * rows + 1];
+        initEdges();
         this.valence = new int[columns][rows];
-        this.chainAt = new Chain[columns][rows];
-        this.chains = new HashSet<>();
+        this.chainAt = new int[columns * rows];
+        Arrays.fill(this.chainAt, Board.NO_CHAIN);
         this.state = BoardState.START;
 
+        // Chain pool initialization, a board never has more chains than boxes
+        int boxes = columns * rows;
+        this.chainType = new ChainType[boxes];
+        this.chainSize = new int[boxes];
+        this.chainStart = new int[boxes];
+        this.chainBoxes = new int[boxes][];
+        this.chainCapacity = Integer.highestOneBit(Math.max(1, boxes - 1)) << 1;
+        this.nextChain = new int[boxes];
+        this.previousChain = new int[boxes];
+        this.freeChains = new int[boxes];
+        for (int i = 0; i < boxes; i++) {
+            // Lowest IDs are handed out first
+            this.freeChains[i] = boxes - 1 - i;
+        }
+        this.freeChainsAmount = boxes;
+        this.openChainsPerSize = new int[Board.maxOpenChainSize + 1];
+        this.loopsPerHalfSize = new int[Board.maxLoopSize / 2 + 1];
+
         this.movesLeft = 2 * this.columns * this.rows + this.columns + this.rows;
-        this.movesLeftPerColumn = new int[2 * this.columns + 1];
+        this.optimalMoves = new int[0];
+        this.openEdges = new int[this.movesLeft];
+        this.openEdgeIndex = new int[(2 * this.columns + 1) * (2 * this.rows + 1)];
+        int i = 0;
         for (int x = 0; x < 2 * this.columns + 1; x++) {
-            this.movesLeftPerColumn[x] = this.rows + x % 2;
+            for (int y = (x + 1) % 2; y < 2 * this.rows + 1; y += 2) {
+                this.openEdgeIndex[edgeToInt(x, y)] = i;
+                this.openEdges[i++] = edgeToInt(x, y);
+            }
         }
-        this.optimalMoves = new int[0];
+        this.safeMovesLeft = this.movesLeft;
+        this.safeEdges = this.openEdges.clone();
+        this.safeEdgeIndex = this.openEdgeIndex.clone();
 
-        this.undoStack = new ArrayList<>();
+        // Hash of the empty board
+        this.zobrist = Zobrist.forSize(columns, rows);
+        this.hash = this.zobrist.scoreDifferenceKey(0, 0);
 
     }
 
@@ -75,56 +169,108 @@ public class Board {
 
         // Creates a deep copy of the important data of this board (including the board representation, but not undo stack nor variables used for temporary calculations)
 
-        // Copy rows, columns, current player and scores
         Board newBoard = new Board(this.columns, this.rows, this.recordUndo);
-        newBoard.currentPlayer = this.currentPlayer;
-        newBoard.scores = new int[]{this.scores[0], this.scores[1]};
+        newBoard.copyFrom(this);
+        return newBoard;
 
-        // Copy edges
-        for (int x = 0; x < 2 * this.columns + 1; x++) {
-            for (int y = (x + 1) % 2; y < 2 * this.rows + 1; y += 2) {
-                newBoard.edges[x][y] = this.edges[x][y];
-            }
-        }
+    }
+
+    public void copyFrom(Board board) {
 
-        // Copy chains
-        HashMap<Chain, Chain> chainMap = new HashMap<>();
-        for (Chain chain : this.chains) {
-            Chain newChain = new Chain(new ArrayList<>(chain.boxes), chain.type);
-            newBoard.chains.add(newChain);
-            chainMap.put(chain, newChain); // Tested, copying ArrayList<Integer> like this works, and enum is immutable so can't be copied
+        // Overwrites this board with the important data of the given board, which should be of the same size and type
+        // Reuses the arrays of this board, so boards can be reset to a position without allocating
+        // The undo stack of this board is cleared, but its undo storage and recordUndo setting are kept
+
+        assert (board.getClass() == this.getClass() && board.columns == this.columns && board.rows == this.rows);
+
+        // Copy current player and scores
+        this.currentPlayer = board.currentPlayer;
+        this.scores[0] = board.scores[0];
+        this.scores[1] = board.scores[1];
+        this.hash = board.hash;
+
+        // Copy edges
+        board.copyEdgesTo(this);
+
+        // Copy chain pool, chains keep their IDs
+        int boxes = this.columns * this.rows;
+        System.arraycopy(board.chainType, 0, this.chainType, 0, boxes);
+        System.arraycopy(board.chainSize, 0, this.chainSize, 0, boxes);
+        System.arraycopy(board.chainStart, 0, this.chainStart, 0, boxes);
+        System.arraycopy(board.nextChain, 0, this.nextChain, 0, boxes);
+        System.arraycopy(board.previousChain, 0, this.previousChain, 0, boxes);
+        System.arraycopy(board.freeChains, 0, this.freeChains, 0, boxes);
+        this.firstChain = board.firstChain;
+        this.chainsAmount = board.chainsAmount;
+        this.freeChainsAmount = board.freeChainsAmount;
+        for (int chain = board.firstChain; chain != Board.NO_CHAIN; chain = board.nextChain[chain]) {
+            if (this.chainBoxes[chain] == null)
+                this.chainBoxes[chain] = new int[this.chainCapacity];
+            System.arraycopy(board.chainBoxes[chain], 0, this.chainBoxes[chain], 0, this.chainCapacity);
         }
+        System.arraycopy(board.openChainsPerSize, 0, this.openChainsPerSize, 0, this.openChainsPerSize.length);
+        System.arraycopy(board.loopsPerHalfSize, 0, this.loopsPerHalfSize, 0, this.loopsPerHalfSize.length);
+        this.longOpenChains = board.longOpenChains;
 
         // Copy valence and chainAt matrix
         for (int x = 0; x < this.columns; x++) {
-            for (int y = 0; y < this.rows; y++) {
-                newBoard.valence[x][y] = this.valence[x][y];
-                newBoard.chainAt[x][y] = chainMap.get(this.chainAt[x][y]);
-            }
+            System.arraycopy(board.valence[x], 0, this.valence[x], 0, this.rows);
         }
+        System.arraycopy(board.chainAt, 0, this.chainAt, 0, boxes);
 
         // Copy state trackers
-        newBoard.state = this.state;
+        this.state = board.state;
 
         // Copy moves
-        newBoard.movesLeft = this.movesLeft;
-        newBoard.movesLeftPerColumn = new int[this.movesLeftPerColumn.length];
-        System.arraycopy(this.movesLeftPerColumn, 0, newBoard.movesLeftPerColumn, 0, this.movesLeftPerColumn.length);
-        newBoard.optimalMoves = new int[this.optimalMoves.length];
-        System.arraycopy(this.optimalMoves, 0, newBoard.optimalMoves, 0, this.optimalMoves.length);
+        // Optimal move arrays are never changed after they're calculated, so they can be shared
+        this.movesLeft = board.movesLeft;
+        this.optimalMoves = board.optimalMoves;
+        System.arraycopy(board.openEdges, 0, this.openEdges, 0, this.openEdges.length);
+        System.arraycopy(board.openEdgeIndex, 0, this.openEdgeIndex, 0, this.openEdgeIndex.length);
+        this.safeMovesLeft = board.safeMovesLeft;
+        System.arraycopy(board.safeEdges, 0, this.safeEdges, 0, this.safeEdges.length);
+        System.arraycopy(board.safeEdgeIndex, 0, this.safeEdgeIndex, 0, this.safeEdgeIndex.length);
+
+        // Clear undo stack
+        if (this.undoDepth > 0)
+            Arrays.fill(this.undoOptimalMoves, 0, this.undoDepth, null);
+        this.undoDepth = 0;
+        this.undoJournalSize = 0;
 
-        return newBoard;
+    }
 
+    public void swapUndoStorage(Board board) {
+        // Exchanges the undo storage of this board with that of another board of the same size, both undo stacks should be empty
+        // Lets a board that only records undo for a short while (like a tree node during a rewound playout) borrow the storage of a long-lived board instead of allocating its own
+        assert (board.columns == this.columns && board.rows == this.rows && this.undoDepth == 0 && board.undoDepth == 0);
+        int[] undoFrames = this.undoFrames;
+        int[][] undoOptimalMoves = this.undoOptimalMoves;
+        long[] undoHashes = this.undoHashes;
+        int[] undoJournal = this.undoJournal;
+        this.undoFrames = board.undoFrames;
+        this.undoOptimalMoves = board.undoOptimalMoves;
+        this.undoHashes = board.undoHashes;
+        this.undoJournal = board.undoJournal;
+        board.undoFrames = undoFrames;
+        board.undoOptimalMoves = undoOptimalMoves;
+        board.undoHashes = undoHashes;
+        board.undoJournal = undoJournal;
+    }
+
+    public long hash() {
+        // Returns the Zobrist hash of this position, which is kept up to date incrementally
+        // Positions reached through different move orders have the same hash
+        return this.hash;
     }
 
     public boolean canUndo() {
-        return this.undoStack.size() > 0;
+        return this.undoDepth > 0;
     }
 
     public void undo() {
-        // Undoes the last transaction on the undo stack
+        // Undoes the last move on the undo stack
         if (canUndo())
-            undoMove(this.undoStack.remove(this.undoStack.size() - 1));
+            undoMove();
     }
 
     public String edgesString() {
@@ -141,7 +287,7 @@ public class Board {
                     res += " ";
                 } else {
                     // Edges
-                    if (this.edges[x][y]) {
+                    if (hasEdge(x, y)) {
                         if (y % 2 == 0) {
                             // Horizontal edge
                             res += "_";
@@ -187,17 +333,20 @@ public class Board {
 
         // x, y are in the edge coordinate system (so in a grid of size (2*columns + 1)x(2*rows + 1))
 
-        // Record main part of move in transaction if necessary
+        // Record main part of move in undo frame if necessary
         if (this.recordUndo) {
-            this.currentTransaction = new Transaction(x, y, state, this.optimalMoves, this.currentPlayer, this.scores);
+            beginUndoFrame(x, y);
         }
 
-        // Update edge matrix
-        this.edges[x][y] = true;
-
-        // Update legal moves
+        // Update edge matrix and legal moves
+        // The move is removed from openEdges by moving the last legal move to its position, its own position is kept to undo this
+        int edge = edgeToInt(x, y);
+        setEdge(x, y);
         this.movesLeft--;
-        this.movesLeftPerColumn[x]--;
+        int lastEdge = this.openEdges[this.movesLeft];
+        this.openEdges[this.openEdgeIndex[edge]] = lastEdge;
+        this.openEdgeIndex[lastEdge] = this.openEdgeIndex[edge];
+        this.hash ^= this.zobrist.edgeKeys[edge] ^ this.zobrist.scoreDifferenceKey(this.scores[0], this.scores[1]);
 
         // Update valence matrix
         this.boxClosed = false;
@@ -220,6 +369,9 @@ public class Board {
             }
         }
 
+        // Update safe moves
+        updateSafeEdges(x, y);
+
         // Update optimal moves
         updateOptimalMoves();
 
@@ -231,12 +383,15 @@ public class Board {
         }
 
         // If during updating no boxes were closed, switch players
-        if (!this.boxClosed)
+        if (!this.boxClosed) {
             this.currentPlayer = (this.currentPlayer + 1) % 2;
+            this.hash ^= this.zobrist.sideKey;
+        }
+        this.hash ^= this.zobrist.scoreDifferenceKey(this.scores[0], this.scores[1]);
 
-        // Push current transaction if necessary
+        // Push current undo frame if necessary
         if (this.recordUndo) {
-            this.undoStack.add(this.currentTransaction);
+            this.undoDepth++;
         }
 
     }
@@ -255,34 +410,25 @@ public class Board {
         return new MoveIterator(this);
     }
 
+    public MoveClassIterator getMoveClassIterator() {
+        // Returns a new iterator over one representative move per class of equivalent legal moves, see MoveClassIterator
+        return new MoveClassIterator(this);
+    }
+
     public int getRandomLegalMoveAsInt(Random rand) {
-        return edgeToInt(getRandomLegalMove(rand));
+        // Returns 0 if there are no moves left, which is never a legal move since it's a node in the edge coordinate system
+        if (this.movesLeft == 0) {
+            return 0;
+        } else {
+            return this.openEdges[rand.nextInt(this.movesLeft)];
+        }
     }
 
     public int[] getRandomLegalMove(Random rand) {
         if (this.movesLeft == 0) {
             return null;
         } else {
-            int index = rand.nextInt(this.movesLeft);
-            for (int x = 0; x < 2 * this.columns + 1; x++) {
-                if (index >= this.movesLeftPerColumn[x]) {
-                    // Move is not in this column, move on
-                    index -= this.movesLeftPerColumn[x];
-                    continue;
-                } else {
-                    // Move is in this column, iterate through rows
-                    for (int y = (x + 1) % 2; y < 2 * this.rows + 1; y += 2) {
-                        if (!this.edges[x][y]) {
-                            if (index == 0) {
-                                return new int[]{x, y};
-                            }
-                            index--;
-                        }
-                    }
-                }
-            }
-            assert (false);
-            return null;
+            return intToEdge(this.openEdges[rand.nextInt(this.movesLeft)]);
         }
     }
 
@@ -291,7 +437,8 @@ public class Board {
         // Generates a new move
         // Returns 0 if there are no moves left
         // If there are optimal moves, this will be one of those
-        // If there aren't, it will be a random legal move which isn't bad (unless it can't find a non-bad one within 1000 iterations)
+        // If there aren't, it will be a random legal move which isn't bad, unless all of them are
+        // Without optimal moves the only half-open or closed chain can be the last chain, otherwise a move is bad exactly when it isn't safe, see isBad
 
         if (this.movesLeft == 0)
             return 0;
@@ -299,91 +446,109 @@ public class Board {
         if (this.optimalMoves.length > 0) {
             // Generate random optimal move
             return this.optimalMoves[rand.nextInt(this.optimalMoves.length)];
+        } else if (this.safeMovesLeft > 0 && avoidsBadMoves()
+                && !(this.chainsAmount == 1 && (this.chainType[this.firstChain] == ChainType.HALF_OPEN || this.chainType[this.firstChain] == ChainType.CLOSED))) {
+            return getRandomSafeMoveAsInt(rand);
         } else {
-
-            // Generate random legal move
-            int move = 0;
-            for (int i = 0; i < 100; i++) {
-                move = getRandomLegalMoveAsInt(rand);
-                if (!isBad(move))
-                    break;
-            }
-            return move;
+            return getRandomLegalMoveAsInt(rand);
         }
 
     }
 
-    public boolean isBad(int move) {
+    public int getRandomSafeMoveAsInt(Random rand) {
+        // Returns 0 if there are no safe moves left
+        if (this.safeMovesLeft == 0) {
+            return 0;
+        } else {
+            return this.safeEdges[rand.nextInt(this.safeMovesLeft)];
+        }
+    }
 
+    public boolean isBad(int move) {
         // Checks if move is bad
         // Current heuristic: don't create half-open or closed chains in the first 50% of the game
-        if ((double) this.movesLeft / (2 * this.columns * this.rows + this.columns + this.rows) < 0.5) {
-            return false;
-        } else {
+        return avoidsBadMoves() && getMoveCategory(move) == MoveCategory.OPENS_CHAIN;
+    }
 
-            int[] edgeCoords = intToEdge(move);
-            int x = edgeCoords[0];
-            int y = edgeCoords[1];
+    protected boolean avoidsBadMoves() {
+        // Moves are only bad in the first 50% of the game, see isBad
+        return (double) this.movesLeft / (2 * this.columns * this.rows + this.columns + this.rows) >= 0.5;
+    }
 
-            // Simulate registerMove and boxUpdate but only do checks we need to check if chain was opened
-            if (x % 2 == 0) {
-                // Vertical edge, increase valence of left and right boxes
-                if (x / 2 - 1 >= 0) {
-                    if (isBoxUpdateBad(x / 2 - 1, y / 2))
-                        return true;
-                }
-                if (x / 2 < this.columns) {
-                    if (isBoxUpdateBad(x / 2, y / 2))
-                        return true;
-                }
-            } else {
-                // Horizontal edge, increase valence of top and bottom boxes
-                if (y / 2 - 1 >= 0) {
-                    if (isBoxUpdateBad(x / 2, y / 2 - 1))
-                        return true;
-                }
-                if (y / 2 < this.rows) {
-                    if (isBoxUpdateBad(x / 2, y / 2))
-                        return true;
-                }
+    public MoveCategory getMoveCategory(int move) {
+
+        // Classifies a legal move by the boxes next to it, in constant time:
+        // - CAPTURE if it closes a box
+        // - SAFE if no box gets its third line, the safe moves are also kept in safeEdges
+        // - OPENS_CHAIN if it gives the third line to a box of an open chain or loop, offering the whole chain or loop (see chainSize) to the other player
+        // - SACRIFICE if it gives the third line to a box of a half-open or closed chain
+        // Boxes on both sides of an edge are in the same chain if both have two or three lines, so at most one chain is involved
+
+        int x = move % (2 * this.columns + 1);
+        int y = move / (2 * this.columns + 1);
+        int maxValence = 0;
+        int box = 0;
+        for (int side = 0; side < 2; side++) {
+            // Left and right box for vertical edges, top and bottom box for horizontal edges
+            int boxX = (x % 2 == 0 ? x / 2 - 1 + side : x / 2);
+            int boxY = (x % 2 == 0 ? y / 2 : y / 2 - 1 + side);
+            if (onBoard(boxX, boxY) && this.valence[boxX][boxY] > maxValence) {
+                maxValence = this.valence[boxX][boxY];
+                box = boxToInt(boxX, boxY);
             }
+        }
+        if (maxValence <= 1)
+            return MoveCategory.SAFE;
+        if (maxValence == 3)
+            return MoveCategory.CAPTURE;
+        ChainType type = this.chainType[this.chainAt[box]];
+        return (type == ChainType.OPEN || type == ChainType.LOOP ? MoveCategory.OPENS_CHAIN : MoveCategory.SACRIFICE);
 
-            // No bad box updates found
-            return false;
+    }
 
+    public int getSacrificeSize(int move) {
+        // Amount of boxes in the chain or loop a move of category OPENS_CHAIN or SACRIFICE gives the third line to, 0 for other moves
+        MoveCategory category = getMoveCategory(move);
+        if (category != MoveCategory.OPENS_CHAIN && category != MoveCategory.SACRIFICE)
+            return 0;
+        int x = move % (2 * this.columns + 1);
+        int y = move / (2 * this.columns + 1);
+        int boxX = (x % 2 == 0 ? x / 2 - 1 : x / 2);
+        int boxY = (x % 2 == 0 ? y / 2 : y / 2 - 1);
+        if (!onBoard(boxX, boxY) || this.valence[boxX][boxY] != 2) {
+            // The box on the other side gets the third line
+            boxX = x / 2;
+            boxY = y / 2;
         }
-
+        return this.chainSize[this.chainAt[boxToInt(boxX, boxY)]];
     }
 
     public math.Vector getHeuristicInput() {
-        // Calculates heuristic input based on board representation
-        // Shouldn't be called more than once per move for efficiency
+        // Calculates heuristic input based on board representation, see fillHeuristicInput
+        double[] res = new double[Board.heuristicInputSize];
+        fillHeuristicInput(res);
+        return new Vector(res);
+    }
+
+    public void fillHeuristicInput(double[] res) {
+        // Writes the heuristic input into res, which should have length heuristicInputSize and may be reused across calls
         // Heuristic input consists of (in this order):
         // - score of current player
         // - score of other player
         // - amount of open chains of size 1 to maxOpenChainSize (inclusive),
         // - amount of loops of size 4 to maxLoopSize (inclusive)
         // - Whether or not chain parity is beneficial (1) or not beneficial (-1) to the current player
-        double[] res = new double[2 + Board.maxOpenChainSize + (Board.maxLoopSize - 2) / 2 + 1];
         res[0] = this.scores[this.currentPlayer];
         res[1] = this.scores[(this.currentPlayer + 1) % 2];
-        for (Chain chain : this.chains) {
-            if (chain.type == ChainType.OPEN) {
-                if (Board.maxOpenChainSize >= 1)
-                    res[1 + Math.min(Board.maxOpenChainSize, chain.size)]++;
-                if (chain.size >= 3) {
-                    // Increment chain parity
-                    res[res.length - 1]++;
-                }
-            } else if (chain.type == ChainType.LOOP) {
-                if (Board.maxLoopSize >= 4)
-                    res[2 + Board.maxOpenChainSize + -2 + Math.min(Board.maxLoopSize, chain.size) / 2]++;
-            }
+        for (int size = 1; size <= Board.maxOpenChainSize; size++) {
+            res[1 + size] = this.openChainsPerSize[size];
+        }
+        for (int halfSize = 2; halfSize <= Board.maxLoopSize / 2; halfSize++) {
+            res[2 + Board.maxOpenChainSize + -2 + halfSize] = this.loopsPerHalfSize[halfSize];
         }
         // Calculate chain parity
         // Player 0 wants the parity of the open chains > 3 to equal the parity of the dots
-        res[res.length - 1] = ((res[res.length - 1] + (this.rows + 1) * (this.columns + 1) + this.currentPlayer + 1) % 2) * 2 - 1;
-        return new Vector(res);
+        res[res.length - 1] = ((this.longOpenChains + (this.rows + 1) * (this.columns + 1) + this.currentPlayer + 1) % 2) * 2 - 1;
     }
 
     public BoardState getState() {
@@ -396,38 +561,240 @@ public class Board {
 
     // Helper methods
 
-    protected void undoMove(Transaction transaction) {
+    protected void beginUndoFrame(int x, int y) {
+
+        // Stores the main part of the move in a new frame on top of the undo stack
+        // The frame is only pushed (by increasing undoDepth) once the move has been registered completely
+
+        if (this.undoFrames == null) {
+            // Allocate undo storage once, every box update pushes at most 1 journal entry and every move updates at most 2 boxes
+            int maxMoves = 2 * this.columns * this.rows + this.columns + this.rows;
+            this.undoFrames = new int[maxMoves * Board.UNDO_FRAME_SIZE];
+            this.undoOptimalMoves = new int[maxMoves][];
+            this.undoHashes = new long[maxMoves];
+            this.undoJournal = new int[maxMoves * 2 * Board.UNDO_MAX_ENTRY_SIZE];
+        }
+
+        int frame = this.undoDepth * Board.UNDO_FRAME_SIZE;
+        this.undoFrames[frame + Board.FRAME_X] = x;
+        this.undoFrames[frame + Board.FRAME_Y] = y;
+        this.undoFrames[frame + Board.FRAME_STATE] = this.state.ordinal();
+        this.undoFrames[frame + Board.FRAME_PLAYER] = this.currentPlayer;
+        this.undoFrames[frame + Board.FRAME_SCORE0] = this.scores[0];
+        this.undoFrames[frame + Board.FRAME_SCORE1] = this.scores[1];
+        this.undoFrames[frame + Board.FRAME_JOURNAL] = this.undoJournalSize;
+        this.undoFrames[frame + Board.FRAME_BOXES_AMOUNT] = 0;
+        this.undoOptimalMoves[this.undoDepth] = this.optimalMoves;
+        this.undoHashes[this.undoDepth] = this.hash;
+
+    }
+
+    protected void recordBoxUpdate(int box) {
+        // Stores a box of which the valence was increased in the current undo frame
+        int frame = this.undoDepth * Board.UNDO_FRAME_SIZE;
+        this.undoFrames[frame + Board.FRAME_BOXES + this.undoFrames[frame + Board.FRAME_BOXES_AMOUNT]++] = box;
+    }
+
+    // The pushUndo methods should only be called when there is a current undo frame
+
+    protected void pushUndoOperand(int operand) {
+        this.undoJournal[this.undoJournalSize++] = operand;
+    }
+
+    protected void pushUndo(int opcode, int operand) {
+        this.undoJournal[this.undoJournalSize++] = operand;
+        this.undoJournal[this.undoJournalSize++] = opcode;
+    }
+
+    protected void pushUndo(int opcode, int operand1, int operand2) {
+        this.undoJournal[this.undoJournalSize++] = operand1;
+        this.undoJournal[this.undoJournalSize++] = operand2;
+        this.undoJournal[this.undoJournalSize++] = opcode;
+    }
+
+    protected void pushUndo(int opcode, int operand1, int operand2, int operand3) {
+        this.undoJournal[this.undoJournalSize++] = operand1;
+        this.undoJournal[this.undoJournalSize++] = operand2;
+        this.undoJournal[this.undoJournalSize++] = operand3;
+        this.undoJournal[this.undoJournalSize++] = opcode;
+    }
+
+    protected void pushUndo(int opcode, int operand1, int operand2, int operand3, int operand4, int operand5) {
+        this.undoJournal[this.undoJournalSize++] = operand1;
+        this.undoJournal[this.undoJournalSize++] = operand2;
+        this.undoJournal[this.undoJournalSize++] = operand3;
+        this.undoJournal[this.undoJournalSize++] = operand4;
+        this.undoJournal[this.undoJournalSize++] = operand5;
+        this.undoJournal[this.undoJournalSize++] = opcode;
+    }
+
+    protected int popUndo() {
+        return this.undoJournal[--this.undoJournalSize];
+    }
 
-        // Reverses the move described by this transaction
+    protected void undoMove() {
+
+        // Reverses the move described by the top frame of the undo stack
+
+        this.undoDepth--;
+        int frame = this.undoDepth * Board.UNDO_FRAME_SIZE;
 
         // Undo main part of move
-        int x = transaction.x;
-        int y = transaction.y;
-        this.edges[x][y] = false;
+        int x = this.undoFrames[frame + Board.FRAME_X];
+        int y = this.undoFrames[frame + Board.FRAME_Y];
+        int edge = edgeToInt(x, y);
+        undoSafeEdges(x, y);
+        clearEdge(x, y);
+        int movedEdge = this.openEdges[this.openEdgeIndex[edge]];
+        this.openEdges[this.movesLeft] = movedEdge;
+        this.openEdgeIndex[movedEdge] = this.movesLeft;
+        this.openEdges[this.openEdgeIndex[edge]] = edge;
         this.movesLeft++;
-        this.movesLeftPerColumn[x]++;
-        this.currentPlayer = transaction.currentPlayer;
-        this.scores = transaction.scores;
+        this.currentPlayer = this.undoFrames[frame + Board.FRAME_PLAYER];
+        this.scores[0] = this.undoFrames[frame + Board.FRAME_SCORE0];
+        this.scores[1] = this.undoFrames[frame + Board.FRAME_SCORE1];
+        this.optimalMoves = this.undoOptimalMoves[this.undoDepth];
+        this.undoOptimalMoves[this.undoDepth] = null;
+        this.hash = this.undoHashes[this.undoDepth];
 
         // Undo state tracking
-        this.state = transaction.state;
+        this.state = Board.boardStates[this.undoFrames[frame + Board.FRAME_STATE]];
 
         // Undo box valence updates
-        for (int i = 0; i < transaction.boxesAmount; i++) {
-            this.valence[transaction.boxCoords[i][0]][transaction.boxCoords[i][1]]--;
+        for (int i = 0; i < this.undoFrames[frame + Board.FRAME_BOXES_AMOUNT]; i++) {
+            int box = this.undoFrames[frame + Board.FRAME_BOXES + i];
+            this.valence[box % this.columns][box / this.columns]--;
         }
 
         // Undo box chain updates in reverse order
-        for (int i = transaction.subTransactions.size() - 1; i >= 0; i--) {
-            SubTransaction subTransaction = transaction.subTransactions.get(i);
-            subTransaction.undo();
+        int journalStart = this.undoFrames[frame + Board.FRAME_JOURNAL];
+        while (this.undoJournalSize > journalStart) {
+            undoJournalEntry(popUndo());
         }
 
     }
 
-    protected void pushSubTransaction(SubTransaction subTransaction) {
-        // Should only be called when there is a current transaction
-        this.currentTransaction.subTransactions.add(subTransaction);
+    protected void undoJournalEntry(int opcode) {
+
+        // Reverses a single box chain update, operands are popped in the reverse order of pushing
+        // Chains are restored in the reverse order of removal, so they get back their old IDs and positions in the chain list
+
+        int chain, chain2, box, size, flags;
+        switch (opcode) {
+            case Board.UNDO_NEW_CHAIN:
+                box = popUndo();
+                chain = popUndo();
+                this.chainAt[box] = Board.NO_CHAIN;
+                removeChain(chain);
+                break;
+            case Board.UNDO_APPEND:
+                box = popUndo();
+                chain = popUndo();
+                this.chainAt[box] = Board.NO_CHAIN;
+                chainRemoveEnd(chain, 1);
+                break;
+            case Board.UNDO_PREPEND:
+                box = popUndo();
+                chain = popUndo();
+                this.chainAt[box] = Board.NO_CHAIN;
+                chainRemoveStart(chain, 1);
+                break;
+            case Board.UNDO_MAKE_LOOP:
+                box = popUndo();
+                chain = popUndo();
+                this.chainAt[box] = Board.NO_CHAIN;
+                setChainType(chain, ChainType.OPEN);
+                chainRemoveEnd(chain, 1);
+                break;
+            case Board.UNDO_MERGE_HALF_OPEN:
+            case Board.UNDO_MERGE_APPEND:
+            case Board.UNDO_MERGE_PREPEND:
+                // The buffer of chain2 may have been reused since it was removed, so rebuild it from the boxes which were added to chain1
+                flags = popUndo();
+                size = popUndo();
+                box = popUndo();
+                chain2 = popUndo();
+                chain = popUndo();
+                this.chainAt[box] = Board.NO_CHAIN;
+                restoreChain(chain2);
+                setChainType(chain2, Board.chainTypes[flags / 2]);
+                if (opcode == Board.UNDO_MERGE_PREPEND) {
+                    // chain2 is at the front of chain1, in the same order if it was prepended in reverse order
+                    for (int i = 0; i < size; i++) {
+                        chainAppend(chain2, chainBox(chain, flags % 2 == 1 ? i : size - 1 - i));
+                    }
+                    chainRemoveStart(chain, size + 1);
+                } else {
+                    // chain2 is at the back of chain1, in reverse order if it was appended in reverse order
+                    int offset = this.chainSize[chain] - size;
+                    for (int i = 0; i < size; i++) {
+                        chainAppend(chain2, chainBox(chain, offset + (flags % 2 == 1 ? size - 1 - i : i)));
+                    }
+                    chainRemoveEnd(chain, size + 1);
+                    if (opcode == Board.UNDO_MERGE_HALF_OPEN) {
+                        // chain1 is always half-open at the start of the merge
+                        setChainType(chain, ChainType.HALF_OPEN);
+                    }
+                }
+                markChain(chain2, chain2);
+                break;
+            case Board.UNDO_SET_TYPE:
+                flags = popUndo();
+                chain = popUndo();
+                setChainType(chain, Board.chainTypes[flags]);
+                break;
+            case Board.UNDO_REVERSE:
+                chain = popUndo();
+                chainReverse(chain);
+                setChainType(chain, ChainType.OPEN);
+                break;
+            case Board.UNDO_SPLIT:
+                flags = popUndo();
+                chain2 = popUndo();
+                chain = popUndo();
+                setChainType(chain, Board.chainTypes[flags / 2]);
+                if (flags % 2 == 1)
+                    chainReverse(chain);
+                for (int i = 0; i < this.chainSize[chain2]; i++) {
+                    chainAppend(chain, chainBox(chain2, i));
+                }
+                markAndRemoveChain(chain2, chain);
+                break;
+            case Board.UNDO_ROTATE:
+                size = popUndo(); // Shift
+                chain = popUndo();
+                setChainType(chain, ChainType.LOOP);
+                chainRotate(chain, -size);
+                break;
+            case Board.UNDO_REMOVE_START:
+                box = popUndo();
+                chain = popUndo();
+                chainPrepend(chain, box);
+                this.chainAt[box] = chain;
+                break;
+            case Board.UNDO_REMOVE_END:
+                box = popUndo();
+                chain = popUndo();
+                chainAppend(chain, box);
+                this.chainAt[box] = chain;
+                break;
+            case Board.UNDO_REMOVE_CHAIN:
+                chain = popUndo();
+                flags = popUndo(); // Type
+                size = popUndo();
+                restoreChain(chain);
+                this.undoJournalSize -= size;
+                setChainType(chain, Board.chainTypes[flags]);
+                for (int i = 0; i < size; i++) {
+                    chainAppend(chain, this.undoJournal[this.undoJournalSize + i]);
+                }
+                markChain(chain, chain);
+                break;
+            default:
+                assert (false);
+                break;
+        }
+
     }
 
     protected void updateOptimalMoves() {
@@ -439,24 +806,26 @@ public class Board {
         // Note that the chain we keep should have enough space to create a hard-hearted handout (at least 4 boxes in closed chains, at least 2 in half-open chains)
 
         // Find chains to play or to keep for a later decision
-        Chain validHalfOpenChain = null;
-        Chain validClosedChain = null;
-        Chain chainToPlay = null;
-        for (Chain chain : this.chains) {
+        int validHalfOpenChain = Board.NO_CHAIN;
+        int validClosedChain = Board.NO_CHAIN;
+        int chainToPlay = Board.NO_CHAIN;
+        for (int chain = this.firstChain; chain != Board.NO_CHAIN; chain = this.nextChain[chain]) {
 
-            if ((chain.type == ChainType.HALF_OPEN && chain.size != 2) || (chain.type == ChainType.CLOSED && chain.size != 4)) {
+            ChainType type = this.chainType[chain];
+            int size = this.chainSize[chain];
+            if ((type == ChainType.HALF_OPEN && size != 2) || (type == ChainType.CLOSED && size != 4)) {
 
                 // Even if we play a box in this chain, it will remain a valid/invalid chain, so we don't have to choose yet
                 chainToPlay = chain;
                 break;
 
-            } else if (chain.type == ChainType.HALF_OPEN) {
+            } else if (type == ChainType.HALF_OPEN) {
 
                 // Valid half-open chain
-                if (validHalfOpenChain == null) {
+                if (validHalfOpenChain == Board.NO_CHAIN) {
                     // Store as valid half-open chain
                     validHalfOpenChain = chain;
-                    if (validClosedChain != null) {
+                    if (validClosedChain != Board.NO_CHAIN) {
                         // We already found a valid closed chain and stored it, so mark the closed chain to be played and keep this one for later
                         chainToPlay = validClosedChain;
                         break;
@@ -467,10 +836,10 @@ public class Board {
                     break;
                 }
 
-            } else if (chain.type == ChainType.CLOSED) {
+            } else if (type == ChainType.CLOSED) {
 
                 // Valid closed chain
-                if (validHalfOpenChain == null && validClosedChain == null) {
+                if (validHalfOpenChain == Board.NO_CHAIN && validClosedChain == Board.NO_CHAIN) {
                     // Store as valid closed chain only if no other candidates have been found yet, including half-open chains
                     validClosedChain = chain;
                 } else {
@@ -482,46 +851,46 @@ public class Board {
             }
         }
 
-        if (this.chains.size() == 1) {
+        if (this.chainsAmount == 1) {
             // End of game, just take the last boxes
-            chainToPlay = (validHalfOpenChain != null ? validHalfOpenChain : validClosedChain);
+            chainToPlay = (validHalfOpenChain != Board.NO_CHAIN ? validHalfOpenChain : validClosedChain);
         }
 
-        if (chainToPlay != null) {
+        if (chainToPlay != Board.NO_CHAIN) {
 
             // Play in this chain right away, no choice required
-            if (chainToPlay.size > 1) {
+            if (this.chainSize[chainToPlay] > 1) {
                 // Just play in between box 0 and 1
-                int[] boxCoords1 = intToBox(chainToPlay.boxes.get(0));
-                int[] boxCoords2 = intToBox(chainToPlay.boxes.get(1));
-                this.optimalMoves = new int[]{edgeToInt(boxCoords1[0] + boxCoords2[0] + 1, boxCoords1[1] + boxCoords2[1] + 1)};
+                int box1 = chainBox(chainToPlay, 0);
+                int box2 = chainBox(chainToPlay, 1);
+                this.optimalMoves = new int[]{edgeToInt(box1 % this.columns + box2 % this.columns + 1, box1 / this.columns + box2 / this.columns + 1)};
             } else {
                 // Chain is half-open and has size 1
-                int[] boxCoords = intToBox(chainToPlay.boxes.get(0));
+                int box = chainBox(chainToPlay, 0);
                 for (int[] neighborDirection : Board.neighborDirections) {
-                    int x = 2 * boxCoords[0] + 1 + neighborDirection[0];
-                    int y = 2 * boxCoords[1] + 1 + neighborDirection[1];
-                    if (!this.edges[x][y]) {
+                    int x = 2 * (box % this.columns) + 1 + neighborDirection[0];
+                    int y = 2 * (box / this.columns) + 1 + neighborDirection[1];
+                    if (!hasEdge(x, y)) {
                         this.optimalMoves = new int[]{edgeToInt(x, y)};
                         break;
                     }
                 }
             }
 
-        } else if (validHalfOpenChain != null || validClosedChain != null) {
+        } else if (validHalfOpenChain != Board.NO_CHAIN || validClosedChain != Board.NO_CHAIN) {
 
             // At most one valid chain was found, so play half-hearted hand-out
             // Chain is either closed with size 4 or open with size 2
             // In both cases, choose in between two open edges around second box
 
             // Choose in between two open edges around second box
-            int[] boxCoords = intToBox((validHalfOpenChain != null ? validHalfOpenChain : validClosedChain).boxes.get(1));
+            int box = chainBox(validHalfOpenChain != Board.NO_CHAIN ? validHalfOpenChain : validClosedChain, 1);
             this.optimalMoves = new int[2];
             int i = 0;
             for (int[] neighborDirection : Board.neighborDirections) {
-                int x = 2 * boxCoords[0] + 1 + neighborDirection[0];
-                int y = 2 * boxCoords[1] + 1 + neighborDirection[1];
-                if (!this.edges[x][y]) {
+                int x = 2 * (box % this.columns) + 1 + neighborDirection[0];
+                int y = 2 * (box / this.columns) + 1 + neighborDirection[1];
+                if (!hasEdge(x, y)) {
                     this.optimalMoves[i++] = edgeToInt(x, y);
                     if (i == 2)
                         break;
@@ -535,14 +904,98 @@ public class Board {
 
     }
 
-    protected boolean isBoxUpdateBad(int x, int y) {
+    protected void updateSafeEdges(int x, int y) {
+
+        // Removes the moves that stopped being safe by drawing edge (x, y), after the valences were updated
+        // Boxes only gain lines, so this is the edge itself and the open edges of boxes that got their second line
+        // Edges are removed like in openEdges, undoSafeEdges adds them back in the reverse order
+
+        removeSafeEdge(edgeToInt(x, y));
+        if (x % 2 == 0) {
+            // Vertical edge, left and right boxes
+            if (x / 2 - 1 >= 0)
+                removeSafeEdgesAround(x / 2 - 1, y / 2);
+            if (x / 2 < this.columns)
+                removeSafeEdgesAround(x / 2, y / 2);
+        } else {
+            // Horizontal edge, top and bottom boxes
+            if (y / 2 - 1 >= 0)
+                removeSafeEdgesAround(x / 2, y / 2 - 1);
+            if (y / 2 < this.rows)
+                removeSafeEdgesAround(x / 2, y / 2);
+        }
+
+    }
+
+    protected void removeSafeEdgesAround(int x, int y) {
+        // x and y are in the box coordinate system
         if (this.valence[x][y] == 2) {
-            // New valence would be 3
-            Chain chain = this.chainAt[x][y];
-            if (chain.type == ChainType.LOOP || chain.type == ChainType.OPEN)
-                return true;
+            for (int[] neighborDirection : Board.neighborDirections) {
+                int edgeX = 2 * x + 1 + neighborDirection[0];
+                int edgeY = 2 * y + 1 + neighborDirection[1];
+                if (!hasEdge(edgeX, edgeY))
+                    removeSafeEdge(edgeToInt(edgeX, edgeY));
+            }
         }
-        return false;
+    }
+
+    protected void removeSafeEdge(int edge) {
+        // Removes edge from the safe moves if it's one of them, its own position is kept to undo this
+        int position = this.safeEdgeIndex[edge];
+        if (position < this.safeMovesLeft && this.safeEdges[position] == edge) {
+            this.safeMovesLeft--;
+            int lastEdge = this.safeEdges[this.safeMovesLeft];
+            this.safeEdges[position] = lastEdge;
+            this.safeEdgeIndex[lastEdge] = position;
+        }
+    }
+
+    protected void undoSafeEdges(int x, int y) {
+
+        // Reverses updateSafeEdges for edge (x, y), before the edge and the valences are restored
+        // The position after the move tells which edges were removed: an open edge of a box with two lines was safe if the box on its other side has at most one line,
+        // since that valence didn't change, and the edge itself was safe if its boxes have at most two lines now
+
+        if (x % 2 == 0) {
+            if (x / 2 < this.columns)
+                restoreSafeEdgesAround(x / 2, y / 2);
+            if (x / 2 - 1 >= 0)
+                restoreSafeEdgesAround(x / 2 - 1, y / 2);
+            if ((x / 2 - 1 < 0 || this.valence[x / 2 - 1][y / 2] <= 2) && (x / 2 >= this.columns || this.valence[x / 2][y / 2] <= 2))
+                restoreSafeEdge(edgeToInt(x, y));
+        } else {
+            if (y / 2 < this.rows)
+                restoreSafeEdgesAround(x / 2, y / 2);
+            if (y / 2 - 1 >= 0)
+                restoreSafeEdgesAround(x / 2, y / 2 - 1);
+            if ((y / 2 - 1 < 0 || this.valence[x / 2][y / 2 - 1] <= 2) && (y / 2 >= this.rows || this.valence[x / 2][y / 2] <= 2))
+                restoreSafeEdge(edgeToInt(x, y));
+        }
+
+    }
+
+    protected void restoreSafeEdgesAround(int x, int y) {
+        // Reverses removeSafeEdgesAround, going through the edges in the reverse order
+        if (this.valence[x][y] == 2) {
+            for (int i = Board.neighborDirections.length - 1; i >= 0; i--) {
+                int[] neighborDirection = Board.neighborDirections[i];
+                int edgeX = 2 * x + 1 + neighborDirection[0];
+                int edgeY = 2 * y + 1 + neighborDirection[1];
+                int otherX = x + neighborDirection[0];
+                int otherY = y + neighborDirection[1];
+                if (!hasEdge(edgeX, edgeY) && (!onBoard(otherX, otherY) || this.valence[otherX][otherY] <= 1))
+                    restoreSafeEdge(edgeToInt(edgeX, edgeY));
+            }
+        }
+    }
+
+    protected void restoreSafeEdge(int edge) {
+        // Puts edge back at its old position, the edge that was moved there goes back to the end
+        int movedEdge = this.safeEdges[this.safeEdgeIndex[edge]];
+        this.safeEdges[this.safeMovesLeft] = movedEdge;
+        this.safeEdgeIndex[movedEdge] = this.safeMovesLeft;
+        this.safeEdges[this.safeEdgeIndex[edge]] = edge;
+        this.safeMovesLeft++;
     }
 
     protected void boxUpdate(int x, int y) {
@@ -552,7 +1005,7 @@ public class Board {
         // Increase valence
         this.valence[x][y]++;
         if (this.recordUndo) {
-            this.currentTransaction.boxCoords[this.currentTransaction.boxesAmount++] = new int[]{x, y};
+            recordBoxUpdate(boxToInt(x, y));
         }
 
         // Check if a box is made
@@ -581,7 +1034,7 @@ public class Board {
                     // Iterate through neighboring boxes
                     int nx = x + neighborDirection[0];
                     int ny = y + neighborDirection[1];
-                    if (onBoard(nx, ny) && boxesConnected(x, y, nx, ny) && this.chainAt[nx][ny] != null) {
+                    if (onBoard(nx, ny) && boxesConnected(x, y, nx, ny) && this.chainAt[boxToInt(nx, ny)] != Board.NO_CHAIN) {
                         neighboringChains++;
                         if (neighboringChains == 1) {
                             x2 = nx;
@@ -595,115 +1048,82 @@ public class Board {
                 }
 
                 // Update chains as required
-                Chain chain;
+                int chain;
                 switch (neighboringChains) {
                     case 0:
                         // Box simply becomes open chain by itself
-                        chain = new Chain(box, ChainType.OPEN);
-                        this.chains.add(chain);
-                        this.chainAt[x][y] = chain;
+                        chain = createChain(ChainType.OPEN);
+                        chainAppend(chain, box);
+                        this.chainAt[box] = chain;
                         if (this.recordUndo) {
-                            pushSubTransaction(new SubTransaction() {
-                                @Override
-                                public void undo() {
-                                    chains.remove(chain);
-                                    chainAt[x][y] = null;
-                                }
-                            });
+                            pushUndo(Board.UNDO_NEW_CHAIN, chain, box);
                         }
                         break;
                     case 1:
                         // Box merges with end of existing chain, chain keeps type (open or half-open)
-                        chain = this.chainAt[x2][y2];
-                        this.chainAt[x][y] = chain;
                         int neighborBox = boxToInt(x2, y2);
-                        if (chain.size == 1 || chain.boxes.get(0) != neighborBox) {
-                            chain.append(box);
+                        chain = this.chainAt[neighborBox];
+                        this.chainAt[box] = chain;
+                        if (this.chainSize[chain] == 1 || chainBox(chain, 0) != neighborBox) {
+                            chainAppend(chain, box);
                             if (this.recordUndo) {
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        chainAt[x][y] = null;
-                                        chain.removeEnd();
-                                    }
-                                });
+                                pushUndo(Board.UNDO_APPEND, chain, box);
                             }
                         } else {
-                            chain.prepend(box);
+                            chainPrepend(chain, box);
                             if (this.recordUndo) {
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        chainAt[x][y] = null;
-                                        chain.removeStart();
-                                    }
-                                });
+                                pushUndo(Board.UNDO_PREPEND, chain, box);
                             }
                         }
                         break;
                     case 2:
                         // Both chains become one (any type) and this box is put in the middle of them
-                        Chain chain1 = this.chainAt[x2][y2];
-                        Chain chain2 = this.chainAt[x3][y3];
+                        int chain1 = this.chainAt[boxToInt(x2, y2)];
+                        int chain2 = this.chainAt[boxToInt(x3, y3)];
                         if (chain1 == chain2) {
                             // Chains on both sides are the same, so it becomes a loop
                             // Box can be added on either side
-                            this.chainAt[x][y] = chain1;
-                            chain1.type = ChainType.LOOP;
-                            chain1.append(box);
+                            this.chainAt[box] = chain1;
+                            setChainType(chain1, ChainType.LOOP);
+                            chainAppend(chain1, box);
                             if (this.recordUndo) {
-                                Chain finalChain1 = chain1;
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        chainAt[x][y] = null;
-                                        finalChain1.type = ChainType.OPEN;
-                                        finalChain1.removeEnd();
-                                    }
-                                });
+                                pushUndo(Board.UNDO_MAKE_LOOP, chain1, box);
                             }
                         } else {
 
                             // Chains on both sides are different, so it doesn't become a loop
 
-                            if (chain1.type == ChainType.HALF_OPEN || chain2.type == ChainType.HALF_OPEN) {
+                            if (this.chainType[chain1] == ChainType.HALF_OPEN || this.chainType[chain2] == ChainType.HALF_OPEN) {
 
                                 // At least one of the chains is half-open
                                 // Keep this chain and append the other one to it
 
                                 // Check if one of the chains is half-open, we will keep this one first
-                                if (chain1.type != ChainType.HALF_OPEN) {
-                                    Chain temp = chain1;
+                                if (this.chainType[chain1] != ChainType.HALF_OPEN) {
+                                    int temp = chain1;
                                     chain1 = chain2;
                                     chain2 = temp;
                                 }
-                                this.chainAt[x][y] = chain1;
-                                chain1.append(box);
+                                this.chainAt[box] = chain1;
+                                chainAppend(chain1, box);
+                                ChainType chain2Type = this.chainType[chain2];
+                                int chain2Size = this.chainSize[chain2];
 
                                 // Update chain 1 type
-                                if (chain2.type == ChainType.HALF_OPEN) {
-                                    chain1.type = ChainType.CLOSED;
+                                if (chain2Type == ChainType.HALF_OPEN) {
+                                    setChainType(chain1, ChainType.CLOSED);
                                 }
 
                                 // Check which side of chain connects to new box
-                                int[] chain2Start = intToBox(chain2.boxes.get(0));
-                                Board.appendChain(chain1, chain2, !((chain2Start[0] == x2 && chain2Start[1] == y2) || (chain2Start[0] == x3 && chain2Start[1] == y3)));
+                                int chain2Start = chainBox(chain2, 0);
+                                boolean reverse = !(chain2Start == boxToInt(x2, y2) || chain2Start == boxToInt(x3, y3));
+                                appendChain(chain1, chain2, reverse);
                                 markAndRemoveChain(chain2, chain1);
 
                                 if (this.recordUndo) {
                                     // chain1 is always half-open at the start of this case
-                                    // chain2 is not changed, just removed from chains set, so can be stored to be re-added later
-                                    Chain finalChain1 = chain1;
-                                    Chain finalChain2 = chain2;
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chainAt[x][y] = null;
-                                            finalChain1.type = ChainType.HALF_OPEN;
-                                            finalChain1.removeEndRange(finalChain2.size + 1);
-                                            markAndAddChain(finalChain2);
-                                        }
-                                    });
+                                    pushUndoLinks(chain2);
+                                    pushUndo(Board.UNDO_MERGE_HALF_OPEN, chain1, chain2, box, chain2Size, 2 * chain2Type.ordinal() + (reverse ? 1 : 0));
                                 }
 
                             } else {
@@ -712,44 +1132,25 @@ public class Board {
                                 // Keep chain 1 and add the other one to it
                                 // Chain type stays open
 
-                                this.chainAt[x][y] = chain1;
-                                int[] chain1Start = intToBox(chain1.boxes.get(0));
-                                if (chain1Start[0] == x2 && chain1Start[1] == y2) {
-                                    chain1.prepend(box);
-                                    int[] chain2Start = intToBox(chain2.boxes.get(0));
-                                    Board.prependChain(chain1, chain2, !(chain2Start[0] == x3 && chain2Start[1] == y3));
+                                this.chainAt[box] = chain1;
+                                int chain2Size = this.chainSize[chain2];
+                                boolean reverse = chainBox(chain2, 0) != boxToInt(x3, y3);
+                                if (chainBox(chain1, 0) == boxToInt(x2, y2)) {
+                                    chainPrepend(chain1, box);
+                                    prependChain(chain1, chain2, reverse);
 
                                     if (this.recordUndo) {
-                                        // chain2 is not changed, just removed from chains set, so can be stored to be re-added later
-                                        Chain finalChain1 = chain1;
-                                        Chain finalChain2 = chain2;
-                                        pushSubTransaction(new SubTransaction() {
-                                            @Override
-                                            public void undo() {
-                                                chainAt[x][y] = null;
-                                                finalChain1.removeStartRange(finalChain2.size + 1);
-                                                markAndAddChain(finalChain2);
-                                            }
-                                        });
+                                        pushUndoLinks(chain2);
+                                        pushUndo(Board.UNDO_MERGE_PREPEND, chain1, chain2, box, chain2Size, 2 * ChainType.OPEN.ordinal() + (reverse ? 1 : 0));
                                     }
 
                                 } else {
-                                    chain1.append(box);
-                                    int[] chain2Start = intToBox(chain2.boxes.get(0));
-                                    Board.appendChain(chain1, chain2, !(chain2Start[0] == x3 && chain2Start[1] == y3));
+                                    chainAppend(chain1, box);
+                                    appendChain(chain1, chain2, reverse);
 
                                     if (this.recordUndo) {
-                                        // chain2 is not changed, just removed from chains set, so can be stored to be re-added later
-                                        Chain finalChain1 = chain1;
-                                        Chain finalChain2 = chain2;
-                                        pushSubTransaction(new SubTransaction() {
-                                            @Override
-                                            public void undo() {
-                                                chainAt[x][y] = null;
-                                                finalChain1.removeEndRange(finalChain2.size + 1);
-                                                markAndAddChain(finalChain2);
-                                            }
-                                        });
+                                        pushUndoLinks(chain2);
+                                        pushUndo(Board.UNDO_MERGE_APPEND, chain1, chain2, box, chain2Size, 2 * ChainType.OPEN.ordinal() + (reverse ? 1 : 0));
                                     }
                                 }
                                 markAndRemoveChain(chain2, chain1);
@@ -768,62 +1169,39 @@ public class Board {
 
                 // New valence = 3: box was already part of a chain and will be part of a chain
 
-                chain = this.chainAt[x][y];
-                int index = chain.boxes.indexOf(box); // Own position in chain;
+                chain = this.chainAt[box];
+                int index = chainIndexOf(chain, box); // Own position in chain;
                 int splitIndex;
-                switch (chain.type) {
+                switch (this.chainType[chain]) {
                     case OPEN:
 
                         this.openedChain = true;
                         splitIndex = findSplitIndex(chain, x, y, index);
                         if (splitIndex == 0) {
                             // Split at start, just change chain type
-                            chain.type = ChainType.HALF_OPEN;
+                            setChainType(chain, ChainType.HALF_OPEN);
                             if (this.recordUndo) {
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        chain.type = ChainType.OPEN;
-                                    }
-                                });
+                                pushUndo(Board.UNDO_SET_TYPE, chain, ChainType.OPEN.ordinal());
                             }
-                        } else if (splitIndex == chain.size) {
+                        } else if (splitIndex == this.chainSize[chain]) {
                             // Split at end, reverse box order and change chain type
-                            Collections.reverse(chain.boxes);
-                            chain.type = ChainType.HALF_OPEN;
+                            chainReverse(chain);
+                            setChainType(chain, ChainType.HALF_OPEN);
                             if (this.recordUndo) {
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        Collections.reverse(chain.boxes);
-                                        chain.type = ChainType.OPEN;
-                                    }
-                                });
+                                pushUndo(Board.UNDO_REVERSE, chain);
                             }
                         } else {
                             if (!this.chainSplit) {
 
                                 // Split in middle, split into two half-open chains
-                                // We keep first part in old chain and reverse it, while copying the second part to a new chain
+                                // We keep first part in old chain and reverse it, while moving the second part to a new chain
 
-                                Chain newChain = new Chain(new ArrayList<>(chain.boxes.subList(splitIndex, chain.size)), ChainType.HALF_OPEN); // Copy second part to new chain
-                                markAndAddChain(newChain);
-                                chain.boxes.subList(splitIndex, chain.size).clear(); // Remove second part from old chain
-                                Collections.reverse(chain.boxes); // Fix order in old chain
-                                chain.size = splitIndex; // Update old chain's size
-                                chain.type = ChainType.HALF_OPEN; // Fix old chain's type
+                                int newChain = splitChain(chain, splitIndex, ChainType.HALF_OPEN);
+                                chainReverse(chain); // Fix order in old chain
+                                setChainType(chain, ChainType.HALF_OPEN); // Fix old chain's type
 
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.type = ChainType.OPEN;
-                                            chain.size += newChain.size;
-                                            Collections.reverse(chain.boxes);
-                                            chain.boxes.addAll(newChain.boxes);
-                                            markAndRemoveChain(newChain, chain);
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_SPLIT, chain, newChain, 2 * ChainType.OPEN.ordinal() + 1);
                                 }
 
                                 this.chainSplit = true;
@@ -852,30 +1230,23 @@ public class Board {
                             }
                         }
 
-                        // Rotate boxes to make sure the list starts and ends with the right boxes
+                        // Rotate boxes to make sure the chain starts and ends with the right boxes
                         int shift;
-                        if (chain.boxes.get((index + 1) % chain.size) == neighborBox) {
+                        if (chainBox(chain, (index + 1) % this.chainSize[chain]) == neighborBox) {
                             // Same ordering
-                            // Rotate list so that box is in front
+                            // Rotate chain so that box is in front
                             shift = -index;
-                            Collections.rotate(chain.boxes, shift);
                         } else {
                             // Reverse ordering
-                            // Rotate list so that box is at the back
-                            shift = chain.size - 1 - index;
-                            Collections.rotate(chain.boxes, shift);
+                            // Rotate chain so that box is at the back
+                            shift = this.chainSize[chain] - 1 - index;
                         }
+                        chainRotate(chain, shift);
 
-                        chain.type = ChainType.CLOSED;
+                        setChainType(chain, ChainType.CLOSED);
 
                         if (this.recordUndo) {
-                            pushSubTransaction(new SubTransaction() {
-                                @Override
-                                public void undo() {
-                                    chain.type = ChainType.LOOP;
-                                    Collections.rotate(chain.boxes, -shift);
-                                }
-                            });
+                            pushUndo(Board.UNDO_ROTATE, chain, shift);
                         }
 
                         this.chainSplit = true;
@@ -886,55 +1257,33 @@ public class Board {
                         splitIndex = findSplitIndex(chain, x, y, index);
                         if (!this.chainSplit) {
 
-                            if (splitIndex == chain.size) {
+                            if (splitIndex == this.chainSize[chain]) {
                                 // Split at end, just change chain type
-                                chain.type = ChainType.CLOSED;
+                                setChainType(chain, ChainType.CLOSED);
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.type = ChainType.HALF_OPEN;
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_SET_TYPE, chain, ChainType.HALF_OPEN.ordinal());
                                 }
                             } else if (splitIndex == 1) {
 
                                 // Split one box from start
                                 // We keep second part in old chain and remove first part
-                                int[] removedBoxCoords = intToBox(chain.boxes.get(0));
-                                this.chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = null;
-                                chain.removeIndex(0);
+                                int removedBox = chainBox(chain, 0);
+                                this.chainAt[removedBox] = Board.NO_CHAIN;
+                                chainRemoveStart(chain, 1);
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.prepend(boxToInt(removedBoxCoords[0], removedBoxCoords[1]));
-                                            chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = chain;
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_REMOVE_START, chain, removedBox);
                                 }
 
                             } else {
 
                                 // Split in middle, split into a closed and half-open chain
-                                // We keep first part in old chain, while copying the second part to a new chain
+                                // We keep first part in old chain, while moving the second part to a new chain
 
-                                Chain newChain = new Chain(new ArrayList<>(chain.boxes.subList(splitIndex, chain.size)), ChainType.HALF_OPEN); // Copy second part to new chain
-                                markAndAddChain(newChain); // Mark boxes in second part as part of new chain
-                                chain.boxes.subList(splitIndex, chain.size).clear(); // Remove second part from old chain
-                                chain.size = splitIndex; // Update old chain's size
-                                chain.type = ChainType.CLOSED; // Fix old chain's type
+                                int newChain = splitChain(chain, splitIndex, ChainType.HALF_OPEN);
+                                setChainType(chain, ChainType.CLOSED); // Fix old chain's type
 
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.type = ChainType.HALF_OPEN;
-                                            chain.size += newChain.size;
-                                            chain.boxes.addAll(newChain.boxes);
-                                            markAndRemoveChain(newChain, chain);
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_SPLIT, chain, newChain, 2 * ChainType.HALF_OPEN.ordinal());
                                 }
 
                             }
@@ -956,56 +1305,34 @@ public class Board {
 
                                 // Split at start of chain
                                 // Remove first box from chain
-                                int[] removedBoxCoords = intToBox(chain.boxes.get(0));
-                                this.chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = null;
-                                chain.removeIndex(0);
+                                int removedBox = chainBox(chain, 0);
+                                this.chainAt[removedBox] = Board.NO_CHAIN;
+                                chainRemoveStart(chain, 1);
 
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.prepend(boxToInt(removedBoxCoords[0], removedBoxCoords[1]));
-                                            chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = chain;
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_REMOVE_START, chain, removedBox);
                                 }
 
-                            } else if (splitIndex == chain.size - 1) {
+                            } else if (splitIndex == this.chainSize[chain] - 1) {
 
                                 // Split at end of chain
                                 // Remove last box from chain
-                                int[] removedBoxCoords = intToBox(chain.boxes.get(chain.size - 1));
-                                this.chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = null;
-                                chain.removeIndex(chain.size - 1);
+                                int removedBox = chainBox(chain, this.chainSize[chain] - 1);
+                                this.chainAt[removedBox] = Board.NO_CHAIN;
+                                chainRemoveEnd(chain, 1);
 
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.append(boxToInt(removedBoxCoords[0], removedBoxCoords[1]));
-                                            chainAt[removedBoxCoords[0]][removedBoxCoords[1]] = chain;
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_REMOVE_END, chain, removedBox);
                                 }
 
                             } else {
 
                                 // Split somewhere in the middle
                                 // We keep first part in the old chain and create a new chain for the second part
-                                Chain newChain = new Chain(new ArrayList<>(chain.boxes.subList(splitIndex, chain.size)), ChainType.CLOSED); // Copy second part to new chain
-                                markAndAddChain(newChain); // Mark boxes in second part as part of new chain
-                                chain.boxes.subList(splitIndex, chain.size).clear(); // Remove second part from old chain
-                                chain.size = splitIndex; // Update old chain's size
+                                int newChain = splitChain(chain, splitIndex, ChainType.CLOSED);
 
                                 if (this.recordUndo) {
-                                    pushSubTransaction(new SubTransaction() {
-                                        @Override
-                                        public void undo() {
-                                            chain.size += newChain.size;
-                                            chain.boxes.addAll(newChain.boxes);
-                                            markAndRemoveChain(newChain, chain);
-                                        }
-                                    });
+                                    pushUndo(Board.UNDO_SPLIT, chain, newChain, 2 * ChainType.CLOSED.ordinal());
                                 }
 
                             }
@@ -1030,28 +1357,25 @@ public class Board {
                     // Box wasn't closed as part of some other chain split yet
 
                     // Check if box needs updating
-                    chain = this.chainAt[x][y];
+                    chain = this.chainAt[box];
 
-                    if (chain.size == 1) {
+                    if (this.chainSize[chain] == 1) {
                         // Half-open chain simply closed itself, so remove chain
-                        markAndRemoveChain(chain, null);
                         if (this.recordUndo) {
-                            pushSubTransaction(new SubTransaction() {
-                                @Override
-                                public void undo() {
-                                    markAndAddChain(chain);
-                                }
-                            });
+                            pushUndoRemoveChain(chain);
                         }
+                        markAndRemoveChain(chain, Board.NO_CHAIN);
                     } else {
 
                         // Chain has at least size 2
 
-                        index = chain.boxes.indexOf(box); // Own position in chain;
-                        int[] neighborCoords = intToBox(chain.boxes.get(index == 0 ? 1 : chain.size - 2));
+                        index = chainIndexOf(chain, box); // Own position in chain;
+                        int neighbor = chainBox(chain, index == 0 ? 1 : this.chainSize[chain] - 2);
+                        int neighborX = neighbor % this.columns;
+                        int neighborY = neighbor / this.columns;
                         int actualNeighborValence = 0; // May not equal valence stored in matrix because the box still needs to be updated
                         for (int[] neighborDirection : Board.neighborDirections) {
-                            if (this.edges[2 * neighborCoords[0] + 1 + neighborDirection[0]][2 * neighborCoords[1] + 1 + neighborDirection[1]]) {
+                            if (hasEdge(2 * neighborX + 1 + neighborDirection[0], 2 * neighborY + 1 + neighborDirection[1])) {
                                 actualNeighborValence++;
                             }
                         }
@@ -1059,15 +1383,10 @@ public class Board {
                         if (actualNeighborValence == 4) {
                             // Neighbor box also has new valence 4, so we will need to perform an update ourselves
                             // Mark boxes and remove chain
-                            markAndRemoveChain(chain, null);
                             if (this.recordUndo) {
-                                pushSubTransaction(new SubTransaction() {
-                                    @Override
-                                    public void undo() {
-                                        markAndAddChain(chain);
-                                    }
-                                });
+                                pushUndoRemoveChain(chain);
                             }
+                            markAndRemoveChain(chain, Board.NO_CHAIN);
                             this.chainSplit = true;
                         }
 
@@ -1084,6 +1403,179 @@ public class Board {
 
     }
 
+    protected void pushUndoRemoveChain(int chain) {
+        // Stores the boxes of a chain that is about to be removed, since its buffer may be reused before the removal is undone
+        int size = this.chainSize[chain];
+        assert (size <= 2);
+        for (int i = 0; i < size; i++) {
+            pushUndoOperand(chainBox(chain, i));
+        }
+        pushUndoLinks(chain);
+        pushUndo(Board.UNDO_REMOVE_CHAIN, size, this.chainType[chain].ordinal(), chain);
+    }
+
+    protected void rebuildFromEdges() {
+
+        // Derives the rest of the board representation from the edges, scores and current player in a single pass over the board, without replaying moves
+        // Should only be called on a freshly constructed board of which only the edges (through setEdge), scores and current player were changed
+        // Chains are the maximal paths and cycles of connected boxes with valence 2 or 3, so they can be found by walking from their ends
+        // The state of the board depends on the order of moves, it's set to START as long as no boxes were closed or there are optimal moves, to MIDDLE otherwise
+
+        assert (this.chainsAmount == 0 && this.undoDepth == 0);
+
+        // Legal moves, drawn edges are put at the back of openEdges
+        int open = 0;
+        int drawn = this.openEdges.length;
+        for (int x = 0; x < 2 * this.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * this.rows + 1; y += 2) {
+                int edge = edgeToInt(x, y);
+                int position = (hasEdge(x, y) ? --drawn : open++);
+                this.openEdges[position] = edge;
+                this.openEdgeIndex[edge] = position;
+            }
+        }
+        this.movesLeft = open;
+
+        // Valence
+        for (int x = 0; x < this.columns; x++) {
+            for (int y = 0; y < this.rows; y++) {
+                int valence = 0;
+                for (int[] neighborDirection : Board.neighborDirections) {
+                    if (hasEdge(2 * x + 1 + neighborDirection[0], 2 * y + 1 + neighborDirection[1]))
+                        valence++;
+                }
+                this.valence[x][y] = valence;
+            }
+        }
+
+        // Chains containing a box with valence 3 are walked from that box, so half-open chains start with it
+        for (int box = 0; box < this.columns * this.rows; box++) {
+            if (this.valence[box % this.columns][box / this.columns] == 3 && this.chainAt[box] == Board.NO_CHAIN)
+                walkChain(box);
+        }
+
+        // Remaining chains without loops have two ends of valence 2 that are connected to a box without a chain
+        for (int box = 0; box < this.columns * this.rows; box++) {
+            int x = box % this.columns;
+            int y = box / this.columns;
+            if (this.valence[x][y] == 2 && this.chainAt[box] == Board.NO_CHAIN) {
+                for (int[] neighborDirection : Board.neighborDirections) {
+                    int nx = x + neighborDirection[0];
+                    int ny = y + neighborDirection[1];
+                    if (boxesConnected(x, y, nx, ny) && !(onBoard(nx, ny) && inChain(nx, ny))) {
+                        walkChain(box);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // All boxes that are still left are part of loops
+        for (int box = 0; box < this.columns * this.rows; box++) {
+            if (this.valence[box % this.columns][box / this.columns] == 2 && this.chainAt[box] == Board.NO_CHAIN)
+                walkChain(box);
+        }
+
+        // Safe moves, in the order of openEdges
+        this.safeMovesLeft = 0;
+        for (int i = 0; i < this.movesLeft; i++) {
+            int edge = this.openEdges[i];
+            if (getMoveCategory(edge) == MoveCategory.SAFE) {
+                this.safeEdges[this.safeMovesLeft] = edge;
+                this.safeEdgeIndex[edge] = this.safeMovesLeft++;
+            }
+        }
+
+        // Optimal moves, state and hash
+        updateOptimalMoves();
+        this.state = (this.scores[0] + this.scores[1] == 0 || hasOptimalMoves() ? BoardState.START : BoardState.MIDDLE);
+        this.hash = this.zobrist.hash(this);
+
+    }
+
+    protected void walkChain(int start) {
+
+        // Creates a chain starting at the given box and follows connected boxes with valence 2 or 3 until the chain ends or returns to the start
+
+        int chain = createChain(ChainType.OPEN);
+        int previous = -1;
+        int box = start;
+        while (true) {
+            chainAppend(chain, box);
+            this.chainAt[box] = chain;
+            int x = box % this.columns;
+            int y = box / this.columns;
+            int next = -1;
+            for (int[] neighborDirection : Board.neighborDirections) {
+                int nx = x + neighborDirection[0];
+                int ny = y + neighborDirection[1];
+                if (onBoard(nx, ny) && boxesConnected(x, y, nx, ny) && inChain(nx, ny) && boxToInt(nx, ny) != previous) {
+                    next = boxToInt(nx, ny);
+                    break;
+                }
+            }
+            if (next == start) {
+                setChainType(chain, ChainType.LOOP);
+                return;
+            }
+            if (next == -1)
+                break;
+            previous = box;
+            box = next;
+        }
+
+        // Determine type from the ends of the chain, chains without a box of valence 3 stay open
+        int end = chainBox(chain, this.chainSize[chain] - 1);
+        if (this.valence[start % this.columns][start / this.columns] == 3)
+            setChainType(chain, (this.chainSize[chain] > 1 && this.valence[end % this.columns][end / this.columns] == 3 ? ChainType.CLOSED : ChainType.HALF_OPEN));
+
+    }
+
+    protected boolean inChain(int x, int y) {
+        // Checks if a box on the board has a valence which makes it part of a chain
+        return this.valence[x][y] == 2 || this.valence[x][y] == 3;
+    }
+
+    // Edge storage
+    // Subclasses may store edges differently (see BitBoard), so all edge accesses go through these methods
+
+    protected void initEdges() {
+        // Called from the constructor to allocate the edge storage of an empty board
+        this.edges = new boolean[2 * this.columns + 1][2 * this.rows + 1];
+        this.movesLeftPerColumn = new int[2 * this.columns + 1];
+        for (int x = 0; x < 2 * this.columns + 1; x++) {
+            this.movesLeftPerColumn[x] = this.rows + x % 2;
+        }
+    }
+
+    protected void copyEdgesTo(Board newBoard) {
+        // newBoard is always of the same type and size as this board
+        for (int x = 0; x < 2 * this.columns + 1; x++) {
+            System.arraycopy(this.edges[x], 0, newBoard.edges[x], 0, 2 * this.rows + 1);
+        }
+        System.arraycopy(this.movesLeftPerColumn, 0, newBoard.movesLeftPerColumn, 0, this.movesLeftPerColumn.length);
+    }
+
+    public boolean hasEdge(int x, int y) {
+        // Checks if a line has been drawn on the given edge
+        return this.edges[x][y];
+    }
+
+    protected void setEdge(int x, int y) {
+        this.edges[x][y] = true;
+        this.movesLeftPerColumn[x]--;
+    }
+
+    protected void clearEdge(int x, int y) {
+        this.edges[x][y] = false;
+        this.movesLeftPerColumn[x]++;
+    }
+
+    public int movesLeftInColumn(int x) {
+        // Returns the amount of legal moves left in the given column of the edge coordinate system
+        return this.movesLeftPerColumn[x];
+    }
+
     protected boolean onBoard(int x, int y) {
         // Checks if the given box coordinates are on the board
         return x >= 0 && x < this.columns && y >= 0 && y < this.rows;
@@ -1097,7 +1589,7 @@ public class Board {
         // Calculates whether or not these boxes don't have a line in between them
         // Should only be called for adjacent boxes
         // Because of the way the edge coordinate system works, the edge in between neighboring boxes is simply the average of the box coordinates converted to the edge coordinate system
-        return !this.edges[x1 + x2 + 1][y1 + y2 + 1];
+        return !hasEdge(x1 + x2 + 1, y1 + y2 + 1);
     }
 
     protected boolean boxesAdjacentAndConnected(int x1, int y1, int x2, int y2) {
@@ -1105,89 +1597,246 @@ public class Board {
         return Board.boxesAdjacent(x1, y1, x2, y2) && boxesConnected(x1, y1, x2, y2);
     }
 
-    protected static void prependChain(Chain main, Chain add, boolean reverse) {
+    // Chain pool
+    // Chains are created and removed in LIFO order when undoing, so removed chains can be restored with their old ID and position in the chain list
+
+    protected int createChain(ChainType type) {
+        // Takes an unused chain ID and inserts the empty chain at the front of the chain list
+        int chain = this.freeChains[--this.freeChainsAmount];
+        if (this.chainBoxes[chain] == null)
+            this.chainBoxes[chain] = new int[this.chainCapacity];
+        this.chainType[chain] = type;
+        this.chainSize[chain] = 0;
+        this.chainStart[chain] = 0;
+        this.previousChain[chain] = Board.NO_CHAIN;
+        this.nextChain[chain] = this.firstChain;
+        if (this.firstChain != Board.NO_CHAIN)
+            this.previousChain[this.firstChain] = chain;
+        this.firstChain = chain;
+        this.chainsAmount++;
+        return chain;
+    }
+
+    protected void removeChain(int chain) {
+        // Unlinks the chain from the chain list and frees its ID, its boxes are left in its buffer
+        countChain(chain, -1);
+        int previous = this.previousChain[chain];
+        int next = this.nextChain[chain];
+        if (previous == Board.NO_CHAIN) {
+            this.firstChain = next;
+        } else {
+            this.nextChain[previous] = next;
+        }
+        if (next != Board.NO_CHAIN)
+            this.previousChain[next] = previous;
+        this.freeChains[this.freeChainsAmount++] = chain;
+        this.chainsAmount--;
+    }
+
+    protected void pushUndoLinks(int chain) {
+        // Stores the neighbors of a removed chain in the chain list, every journal entry which removes a chain starts with these
+        pushUndoOperand(this.previousChain[chain]);
+        pushUndoOperand(this.nextChain[chain]);
+    }
+
+    protected void restoreChain(int chain) {
+        // Reverses removeChain, reading the neighbors stored by pushUndoLinks from the journal
+        // The chain list is in the same state as right after the removal, so the chain can be linked back in between its old neighbors
+        // The chain is restored empty, since its buffer may have been reused in the meantime
+        int next = popUndo();
+        int previous = popUndo();
+        assert (this.freeChains[this.freeChainsAmount - 1] == chain);
+        this.freeChainsAmount--;
+        this.chainSize[chain] = 0;
+        this.chainStart[chain] = 0;
+        this.previousChain[chain] = previous;
+        this.nextChain[chain] = next;
+        if (previous == Board.NO_CHAIN) {
+            this.firstChain = chain;
+        } else {
+            this.nextChain[previous] = chain;
+        }
+        if (next != Board.NO_CHAIN)
+            this.previousChain[next] = chain;
+        this.chainsAmount++;
+    }
+
+    protected void countChain(int chain, int delta) {
+        // Adds the chain to the heuristic features (or removes it for a negative delta)
+        // Every change to the type or size of a chain in the chain list is done by removing it before and adding it back after the change
+        int size = this.chainSize[chain];
+        if (this.chainType[chain] == ChainType.OPEN) {
+            if (size >= 1)
+                this.openChainsPerSize[Math.min(Board.maxOpenChainSize, size)] += delta;
+            if (size >= 3)
+                this.longOpenChains += delta;
+        } else if (this.chainType[chain] == ChainType.LOOP) {
+            if (size >= 4)
+                this.loopsPerHalfSize[Math.min(Board.maxLoopSize, size) / 2] += delta;
+        }
+    }
+
+    protected void setChainType(int chain, ChainType type) {
+        countChain(chain, -1);
+        this.chainType[chain] = type;
+        countChain(chain, 1);
+    }
+
+    public int chainBox(int chain, int index) {
+        // Returns the box at the given position in the chain
+        return this.chainBoxes[chain][(this.chainStart[chain] + index) & (this.chainCapacity - 1)];
+    }
+
+    protected void chainAppend(int chain, int box) {
+        countChain(chain, -1);
+        this.chainBoxes[chain][(this.chainStart[chain] + this.chainSize[chain]) & (this.chainCapacity - 1)] = box;
+        this.chainSize[chain]++;
+        countChain(chain, 1);
+    }
+
+    protected void chainPrepend(int chain, int box) {
+        countChain(chain, -1);
+        this.chainStart[chain] = (this.chainStart[chain] - 1) & (this.chainCapacity - 1);
+        this.chainBoxes[chain][this.chainStart[chain]] = box;
+        this.chainSize[chain]++;
+        countChain(chain, 1);
+    }
+
+    protected void chainRemoveStart(int chain, int amount) {
+        countChain(chain, -1);
+        this.chainStart[chain] = (this.chainStart[chain] + amount) & (this.chainCapacity - 1);
+        this.chainSize[chain] -= amount;
+        countChain(chain, 1);
+    }
+
+    protected void chainRemoveEnd(int chain, int amount) {
+        countChain(chain, -1);
+        this.chainSize[chain] -= amount;
+        countChain(chain, 1);
+    }
+
+    protected void chainReverse(int chain) {
+        int[] boxes = this.chainBoxes[chain];
+        int mask = this.chainCapacity - 1;
+        int start = this.chainStart[chain];
+        for (int i = 0, j = this.chainSize[chain] - 1; i < j; i++, j--) {
+            int temp = boxes[(start + i) & mask];
+            boxes[(start + i) & mask] = boxes[(start + j) & mask];
+            boxes[(start + j) & mask] = temp;
+        }
+    }
+
+    protected void chainRotate(int chain, int distance) {
+        // Same semantics as Collections.rotate: the box at index i moves to index (i + distance) modulo the chain size
+        int size = this.chainSize[chain];
+        if (this.rotationBuffer == null)
+            this.rotationBuffer = new int[this.chainCapacity];
+        for (int i = 0; i < size; i++) {
+            this.rotationBuffer[i] = chainBox(chain, i);
+        }
+        int[] boxes = this.chainBoxes[chain];
+        int mask = this.chainCapacity - 1;
+        int start = this.chainStart[chain];
+        distance = ((distance % size) + size) % size;
+        for (int i = 0; i < size; i++) {
+            boxes[(start + (i + distance) % size) & mask] = this.rotationBuffer[i];
+        }
+    }
+
+    public int chainIndexOf(int chain, int box) {
+        // Returns the position of the box in the chain, -1 if it isn't part of the chain
+        for (int i = 0; i < this.chainSize[chain]; i++) {
+            if (chainBox(chain, i) == box)
+                return i;
+        }
+        return -1;
+    }
+
+    protected int splitChain(int chain, int splitIndex, ChainType type) {
+        // Moves the boxes from splitIndex onwards to a new chain of the given type and returns the new chain
+        int newChain = createChain(type);
+        for (int i = splitIndex; i < this.chainSize[chain]; i++) {
+            chainAppend(newChain, chainBox(chain, i));
+        }
+        chainRemoveEnd(chain, this.chainSize[chain] - splitIndex);
+        markChain(newChain, newChain);
+        return newChain;
+    }
+
+    protected void prependChain(int main, int add, boolean reverse) {
         // reverse indicates order in which boxes are prepended, not order in which they will end up in the main chain
         if (reverse) {
             // Add in reverse order
-            for (int i = add.size - 1; i >= 0; i--) {
-                main.prepend(add.boxes.get(i));
+            for (int i = this.chainSize[add] - 1; i >= 0; i--) {
+                chainPrepend(main, chainBox(add, i));
             }
         } else {
             // Add in same order
-            for (int i = 0; i < add.size; i++) {
-                main.prepend(add.boxes.get(i));
+            for (int i = 0; i < this.chainSize[add]; i++) {
+                chainPrepend(main, chainBox(add, i));
             }
         }
     }
 
-    protected static void appendChain(Chain main, Chain add, boolean reverse) {
+    protected void appendChain(int main, int add, boolean reverse) {
         if (reverse) {
             // Add in reverse order
-            for (int i = add.size - 1; i >= 0; i--) {
-                main.append(add.boxes.get(i));
+            for (int i = this.chainSize[add] - 1; i >= 0; i--) {
+                chainAppend(main, chainBox(add, i));
             }
         } else {
             // Add in same order
-            for (int i = 0; i < add.size; i++) {
-                main.append(add.boxes.get(i));
+            for (int i = 0; i < this.chainSize[add]; i++) {
+                chainAppend(main, chainBox(add, i));
             }
         }
     }
 
-    protected void markAndRemoveChain(Chain toBeMarked, Chain marker) {
-        // Marks all boxes in toBeMarked as part of marker in the chainAt table and then removes toBeMarked from the set of chains
+    protected void markAndRemoveChain(int toBeMarked, int marker) {
+        // Marks all boxes in toBeMarked as part of marker in the chainAt table and then removes toBeMarked from the chain list
         markChain(toBeMarked, marker);
-        this.chains.remove(toBeMarked);
+        removeChain(toBeMarked);
     }
 
-    protected void markAndAddChain(Chain toBeMarked) {
-        // Marks all boxes in toBeMarked as part of toBeMarked in the chainAt table and then adds toBeMarked to the set of chains
-        // Mostly used for undoing
-        markChain(toBeMarked, toBeMarked);
-        this.chains.add(toBeMarked);
-    }
-
-    protected void markChain(Chain toBeMarked, Chain marker) {
-        // Marks all boxes in toBeMarked as part of marker in the chainAt table and then removes toBeMarked from the set of chains
-        // marker can be null, toBeMarked cannot be null
-        // Mark correct chain in chainAt table
-        for (int i = 0; i < toBeMarked.size; i++) {
-            int addedBox = toBeMarked.boxes.get(i);
-            int[] addedBoxCoords = intToBox(addedBox);
-            this.chainAt[addedBoxCoords[0]][addedBoxCoords[1]] = marker;
+    protected void markChain(int toBeMarked, int marker) {
+        // Marks all boxes in toBeMarked as part of marker in the chainAt table
+        // marker can be NO_CHAIN, toBeMarked cannot be NO_CHAIN
+        for (int i = 0; i < this.chainSize[toBeMarked]; i++) {
+            this.chainAt[chainBox(toBeMarked, i)] = marker;
         }
-
     }
 
-    protected int findSplitIndex(Chain chain, int x, int y, int index) {
+    protected int findSplitIndex(int chain, int x, int y, int index) {
         // Look for split around box (with coordinates x and y) at index in chain
         // Chain type should still be its old type
         // Should not be used for loops
-        // split index meaning: index + 0 indicates split happened in front of box in chain.boxes, index + 1 indicates behind
+        // split index meaning: index + 0 indicates split happened in front of box in chain, index + 1 indicates behind
         // In case of an open chain of size 1, the splitIndex can be 0 or 1 since the order is irrelevant at this point
 
+        int size = this.chainSize[chain];
+
         // Check for split in middle of chain
         for (int i = 0; i < 2; i++) {
             int testIndex = index + 2 * i - 1;
-            if (testIndex >= 0 && testIndex < chain.size) {
-                int[] neighborCoords = intToBox(chain.boxes.get(testIndex));
-                if (!boxesConnected(x, y, neighborCoords[0], neighborCoords[1]))
+            if (testIndex >= 0 && testIndex < size) {
+                int neighbor = chainBox(chain, testIndex);
+                if (!boxesConnected(x, y, neighbor % this.columns, neighbor / this.columns))
                     return index + i;
             }
         }
 
         // Split happened at edges of chain
-        if (chain.type == ChainType.HALF_OPEN) {
+        if (this.chainType[chain] == ChainType.HALF_OPEN) {
             // Split must have happened at the end (open side)
-            return chain.size;
+            return size;
         } else {
             // Chain must (have been) open, check both sides
-            for (int i = 0; i < chain.size; i += chain.size - 1) {
-                int[] boxCoords = intToBox(chain.boxes.get(i));
-                if (this.valence[boxCoords[0]][boxCoords[1]] == 3) {
-                    return (i > 0 ? chain.size : 0);
+            for (int i = 0; i < size; i += size - 1) {
+                int box = chainBox(chain, i);
+                if (this.valence[box % this.columns][box / this.columns] == 3) {
+                    return (i > 0 ? size : 0);
                 }
-                if (chain.size == 1)
+                if (size == 1)
                     break;
             }
         }
@@ -1198,7 +1847,7 @@ public class Board {
 
     protected int boxToInt(int x, int y) {
         // Converts a box to an int ID
-        // Used to store boxes as an ArrayList in the Chain class
+        // Used to store boxes in chains and to index chainAt
         return y * this.columns + x;
     }
 
@@ -0,0 +1,146 @@
+package board;
+
+import java.nio.ByteBuffer;
+
+public class BoardCodec {
+
+    // Converts board positions to and from compact binary representations
+    // Positions consist of the edges, scores and current player, decoding rebuilds the rest of the board directly (see Board.rebuildFromEdges) instead of replaying moves
+    // Edges are always stored one bit per edge, going through the columns of the edge coordinate system from left to right and from top to bottom within a column
+
+    // Byte format, also used for the solved games of ann.Trainer:
+    // columns, rows, current player, score of player 0 and score of player 1 as ints, followed by the edge bits packed in bytes (lowest bit first)
+
+    public static int encodedSize(int columns, int rows) {
+        // Amount of bytes a position of this size takes in the byte format
+        return 5 * 4 + (BoardCodec.edgesAmount(columns, rows) + 7) / 8;
+    }
+
+    public static void write(ByteBuffer buffer, Board board) {
+        // Writes the position to the buffer in the byte format
+        buffer.putInt(board.columns);
+        buffer.putInt(board.rows);
+        buffer.putInt(board.getCurrentPlayer());
+        buffer.putInt(board.scores[0]);
+        buffer.putInt(board.scores[1]);
+        int value = 0;
+        int bit = 0;
+        for (int x = 0; x < 2 * board.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * board.rows + 1; y += 2) {
+                if (board.hasEdge(x, y))
+                    value |= 1 << bit;
+                if (++bit == 8) {
+                    buffer.put((byte) value);
+                    value = 0;
+                    bit = 0;
+                }
+            }
+        }
+        if (bit > 0)
+            buffer.put((byte) value);
+    }
+
+    public static byte[] encode(Board board) {
+        ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.encodedSize(board.columns, board.rows));
+        BoardCodec.write(buffer, board);
+        return buffer.array();
+    }
+
+    public static Board read(ByteBuffer buffer) {
+        // Reads a position in the byte format from the buffer
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        Board board = new BitBoard(columns, rows, false);
+        board.currentPlayer = buffer.getInt();
+        board.scores[0] = buffer.getInt();
+        board.scores[1] = buffer.getInt();
+        int value = 0;
+        int bit = 8;
+        for (int x = 0; x < 2 * columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * rows + 1; y += 2) {
+                if (bit == 8) {
+                    value = buffer.get();
+                    bit = 0;
+                }
+                if (((value >> bit++) & 1) == 1)
+                    board.setEdge(x, y);
+            }
+        }
+        board.rebuildFromEdges();
+        return board;
+    }
+
+    public static Board decode(byte[] bytes) {
+        return BoardCodec.read(ByteBuffer.wrap(bytes));
+    }
+
+    // Key format: fixed amount of longs per board size, meant for hashing and comparing positions of the same size
+    // Edge bits, followed by the score of player 0, the score of player 1 and the current player
+    // Positions up to 8x8 fit in 3 longs
+
+    public static int keyLength(int columns, int rows) {
+        return (BoardCodec.edgesAmount(columns, rows) + 2 * BoardCodec.scoreBits(columns, rows) + 1 + 63) / 64;
+    }
+
+    public static long[] toKey(Board board) {
+        long[] key = new long[BoardCodec.keyLength(board.columns, board.rows)];
+        int bit = 0;
+        for (int x = 0; x < 2 * board.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * board.rows + 1; y += 2) {
+                if (board.hasEdge(x, y))
+                    key[bit >>> 6] |= 1L << bit;
+                bit++;
+            }
+        }
+        int scoreBits = BoardCodec.scoreBits(board.columns, board.rows);
+        bit = BoardCodec.putBits(key, bit, board.scores[0], scoreBits);
+        bit = BoardCodec.putBits(key, bit, board.scores[1], scoreBits);
+        BoardCodec.putBits(key, bit, board.getCurrentPlayer(), 1);
+        return key;
+    }
+
+    public static Board fromKey(int columns, int rows, long[] key) {
+        Board board = new BitBoard(columns, rows, false);
+        int bit = 0;
+        for (int x = 0; x < 2 * columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * rows + 1; y += 2) {
+                if (((key[bit >>> 6] >>> bit) & 1) == 1)
+                    board.setEdge(x, y);
+                bit++;
+            }
+        }
+        int scoreBits = BoardCodec.scoreBits(columns, rows);
+        board.scores[0] = BoardCodec.getBits(key, bit, scoreBits);
+        board.scores[1] = BoardCodec.getBits(key, bit + scoreBits, scoreBits);
+        board.currentPlayer = BoardCodec.getBits(key, bit + 2 * scoreBits, 1);
+        board.rebuildFromEdges();
+        return board;
+    }
+
+    private static int edgesAmount(int columns, int rows) {
+        return 2 * columns * rows + columns + rows;
+    }
+
+    private static int scoreBits(int columns, int rows) {
+        // Amount of bits needed to store a score between 0 and columns * rows (inclusive)
+        return 32 - Integer.numberOfLeadingZeros(columns * rows);
+    }
+
+    private static int putBits(long[] key, int bit, int value, int amount) {
+        // Stores the lowest amount bits of value starting at the given bit and returns the bit after them
+        for (int i = 0; i < amount; i++, bit++) {
+            if (((value >> i) & 1) == 1)
+                key[bit >>> 6] |= 1L << bit;
+        }
+        return bit;
+    }
+
+    private static int getBits(long[] key, int bit, int amount) {
+        int value = 0;
+        for (int i = 0; i < amount; i++, bit++) {
+            value |= (int) ((key[bit >>> 6] >>> bit) & 1) << i;
+        }
+        return value;
+    }
+
+}
@@ -1,5 +1,10 @@
 package board;
 
+import main.AlphaBeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Random;
 
 public class BoardTester {
@@ -7,13 +12,18 @@ public class BoardTester {
     public static void main(String[] args) {
 
         BoardTester.verifyRandomGames(true, 100000, 5, 10, 5, 10, 189486484);
+        BoardTester.crossCheckRandomGames(10000, 1, 10, 1, 10, 189486484);
+        BoardTester.verifySymmetries(1000, 1, 8, 1, 8, 189486484);
+        BoardTester.verifyCodec(1000, 1, 10, 1, 10, 189486484);
+        BoardTester.verifyEndgames(1000, 3, 6, 3, 6, 16, 189486484);
+        BoardTester.verifyMoveClasses(300, 2, 4, 2, 4, 12, 189486484);
 
     }
 
     public static boolean verifyRandomGames(boolean verify, int amount, int minColumns, int maxColumns, int minRows, int maxRows, int seed) {
 
         // Simulates random games consisting of legal moves and verifies invariants after every move
-        // Also undoes all moves at the end and verifies the invariants after every undo
+        // Also undoes all moves at the end and verifies the invariants after every undo and that every undo restores the exact position before that move
         // If no violations are found, returns true
         // If violations are found, prints information and returns false
 
@@ -42,6 +52,7 @@ public class BoardTester {
             }
 
             // Play random moves until none are left
+            ArrayList<Board> history = new ArrayList<>(); // Copies of the board before every move, to compare with after undoing that move
             while (board.movesLeft > 0) {
 
                 // Select random move
@@ -56,6 +67,7 @@ public class BoardTester {
                     long start = System.nanoTime();
                     oldBoard = board.deepcopy();
                     totalCopyTime += (System.nanoTime() - start) / 1000000000.0;
+                    history.add(oldBoard);
 
                     // Play move
                     totalMoves++;
@@ -109,6 +121,8 @@ public class BoardTester {
                         // Verify
                         if (verify && !BoardTester.verifyInvariants(board))
                             throw new RuntimeException("Invariants violated.");
+                        if (verify && !BoardTester.verifyIdentical(history.remove(history.size() - 1), board))
+                            throw new RuntimeException("Undo didn't restore the previous position.");
 
                     } catch (RuntimeException e) {
                         System.out.println("Failed with " + board.movesLeft + " moves undone!");
@@ -134,6 +148,419 @@ public class BoardTester {
 
     }
 
+    public static boolean crossCheckRandomGames(int amount, int minColumns, int maxColumns, int minRows, int maxRows, int seed) {
+
+        // Plays the same random games on a Board and a BitBoard and checks after every move and every undo that they are equivalent
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        Random rand = new Random(seed);
+
+        for (int game = 0; game < amount; game++) {
+
+            // Initialization
+            int columns = rand.nextInt(maxColumns - minColumns + 1) + minColumns;
+            int rows = rand.nextInt(maxRows - minRows + 1) + minRows;
+            Board board = new Board(columns, rows, true);
+            BitBoard bitBoard = new BitBoard(columns, rows, true);
+            BitBoard scratchBoard = new BitBoard(columns, rows, true); // Overwritten with copyFrom after every move
+
+            if (game % 1000 == 0) {
+                System.out.println("Started cross-checking game " + game);
+            }
+
+            // Play random moves until none are left, both boards should agree on which move is picked
+            while (board.movesLeft > 0) {
+                long seedForMove = rand.nextLong();
+                int[] move = board.getRandomLegalMove(new Random(seedForMove));
+                int[] bitMove = bitBoard.getRandomLegalMove(new Random(seedForMove));
+                if (move[0] != bitMove[0] || move[1] != bitMove[1]) {
+                    System.out.println("Difference: Board picked random move " + move[0] + ", " + move[1] + " but BitBoard picked " + bitMove[0] + ", " + bitMove[1]);
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+                board.registerMove(move);
+                bitBoard.registerMove(move);
+                if (!BoardTester.verifyInvariants(bitBoard) || !BoardTester.verifyIdentical(board, bitBoard)) {
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+                // Copies should stay identical as well
+                if (!BoardTester.verifyIdentical(board.deepcopy(), bitBoard.deepcopy())) {
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+                scratchBoard.copyFrom(bitBoard);
+                if (!BoardTester.verifyInvariants(scratchBoard) || !BoardTester.verifyIdentical(bitBoard, scratchBoard) || scratchBoard.canUndo()) {
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+            }
+
+            // Undo all moves
+            while (board.canUndo()) {
+                board.undo();
+                bitBoard.undo();
+                if (!BoardTester.verifyInvariants(bitBoard) || !BoardTester.verifyIdentical(board, bitBoard)) {
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+            }
+
+        }
+
+        System.out.println("Cross-checked " + amount + " games with " + minColumns + "-" + maxColumns + " columns " + minRows + "-" + maxRows + " rows.");
+        return true;
+
+    }
+
+    public static boolean verifySymmetries(int amount, int minColumns, int maxColumns, int minRows, int maxRows, int seed) {
+
+        // Plays random games together with their images under every symmetry of the grid
+        // Checks after every move that all images have the same scores, the hash predicted by Symmetry and the same canonical encoding and hash
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        Random rand = new Random(seed);
+
+        for (int game = 0; game < amount; game++) {
+
+            // Initialization
+            int columns = rand.nextInt(maxColumns - minColumns + 1) + minColumns;
+            int rows = rand.nextInt(maxRows - minRows + 1) + minRows;
+            Symmetry symmetry = Symmetry.forSize(columns, rows);
+            Board board = new Board(columns, rows, false);
+            Board[] images = new Board[symmetry.transformsAmount];
+            for (int transform = 0; transform < symmetry.transformsAmount; transform++) {
+                images[transform] = new BitBoard(columns, rows, false);
+            }
+
+            if (game % 1000 == 0) {
+                System.out.println("Started verifying symmetries of game " + game);
+            }
+
+            while (board.movesLeft > 0) {
+                int move = board.getRandomLegalMoveAsInt(rand);
+                board.registerMove(move);
+                long canonicalHash = symmetry.canonicalHash(board);
+                long[] canonicalEncoding = symmetry.canonicalEncoding(board);
+                for (int transform = 0; transform < symmetry.transformsAmount; transform++) {
+                    int transformedMove = symmetry.transformMove(transform, move);
+                    if (symmetry.inverseTransformMove(transform, transformedMove) != move) {
+                        System.out.println("Difference: transform " + transform + " maps move " + move + " to " + transformedMove + " but not back");
+                        return false;
+                    }
+                    images[transform].registerMove(transformedMove);
+                    if (images[transform].scores[0] != board.scores[0] || images[transform].scores[1] != board.scores[1] || images[transform].currentPlayer != board.currentPlayer) {
+                        // A symmetry closes the same amount of boxes with every move
+                        System.out.println("Difference: image under transform " + transform + " has different scores or current player");
+                        return false;
+                    }
+                    if (images[transform].hash() != symmetry.hash(board, transform)) {
+                        System.out.println("Difference: image under transform " + transform + " has hash " + images[transform].hash() + " but predicted " + symmetry.hash(board, transform));
+                        System.out.println(board.edgesString());
+                        return false;
+                    }
+                    if (symmetry.canonicalHash(images[transform]) != canonicalHash || !Arrays.equals(symmetry.canonicalEncoding(images[transform]), canonicalEncoding)) {
+                        System.out.println("Difference: image under transform " + transform + " has a different canonical position");
+                        System.out.println(board.edgesString());
+                        System.out.println(images[transform].edgesString());
+                        return false;
+                    }
+                }
+            }
+
+        }
+
+        System.out.println("Verified symmetries of " + amount + " games with " + minColumns + "-" + maxColumns + " columns " + minRows + "-" + maxRows + " rows.");
+        return true;
+
+    }
+
+    public static boolean verifyCodec(int amount, int minColumns, int maxColumns, int minRows, int maxRows, int seed) {
+
+        // Plays random games and checks after every move that positions decoded by BoardCodec are equivalent to the original board
+        // The state depends on the order of moves rather than just the position, so it's copied from the original board before comparing
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        Random rand = new Random(seed);
+
+        for (int game = 0; game < amount; game++) {
+
+            // Initialization
+            int columns = rand.nextInt(maxColumns - minColumns + 1) + minColumns;
+            int rows = rand.nextInt(maxRows - minRows + 1) + minRows;
+            Board board = new Board(columns, rows, false);
+
+            if (game % 1000 == 0) {
+                System.out.println("Started verifying codec for game " + game);
+            }
+
+            while (board.movesLeft > 0) {
+                board.registerMove(board.getRandomLegalMoveAsInt(rand));
+                Board[] decodedBoards = new Board[]{
+                        BoardCodec.decode(BoardCodec.encode(board)),
+                        BoardCodec.fromKey(columns, rows, BoardCodec.toKey(board))
+                };
+                for (Board decoded : decodedBoards) {
+                    decoded.state = board.state;
+                    if (!BoardTester.verifyInvariants(decoded) || !BoardTester.verifyEquivalent(board, decoded)) {
+                        System.out.println(board.edgesString());
+                        return false;
+                    }
+                }
+                if (!Arrays.equals(BoardCodec.toKey(board), BoardCodec.toKey(decodedBoards[0]))) {
+                    System.out.println("Difference: keys of the original and decoded board differ");
+                    return false;
+                }
+            }
+
+        }
+
+        System.out.println("Verified codec for " + amount + " games with " + minColumns + "-" + maxColumns + " columns " + minRows + "-" + maxRows + " rows.");
+        return true;
+
+    }
+
+    public static boolean verifyEndgames(int amount, int minColumns, int maxColumns, int minRows, int maxRows, int maxMovesLeft, int seed) {
+
+        // Plays random games, preferring acceptable moves so long chains and loops are formed, and checks EndgameEvaluator in every position with at most maxMovesLeft moves left
+        // Simple loony endgames are compared with an exhaustive search, other positions should get no value
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        Random rand = new Random(seed);
+        int endgames = 0;
+
+        for (int game = 0; game < amount; game++) {
+
+            // Initialization
+            int columns = rand.nextInt(maxColumns - minColumns + 1) + minColumns;
+            int rows = rand.nextInt(maxRows - minRows + 1) + minRows;
+            Board board = new Board(columns, rows, true);
+
+            if (game % 1000 == 0) {
+                System.out.println("Started verifying endgames of game " + game);
+            }
+
+            while (board.movesLeft > 0) {
+                int move = board.getNextAcceptableMove(rand);
+                board.registerMove(move != 0 ? move : board.getRandomLegalMoveAsInt(rand));
+                if (board.movesLeft > maxMovesLeft)
+                    continue;
+                int value = EndgameEvaluator.scoreDifference(board);
+                if (value == EndgameEvaluator.NO_VALUE)
+                    continue;
+                endgames++;
+                int searchedValue = BoardTester.solve(board, new HashMap<>());
+                if (value != searchedValue) {
+                    System.out.println("Difference: evaluator gives score difference " + value + " but search gives " + searchedValue);
+                    System.out.println(board.edgesString());
+                    return false;
+                }
+            }
+
+        }
+
+        System.out.println("Verified " + endgames + " endgames of " + amount + " games with " + minColumns + "-" + maxColumns + " columns " + minRows + "-" + maxRows + " rows.");
+        return true;
+
+    }
+
+    public static boolean verifyMoveClasses(int amount, int minColumns, int maxColumns, int minRows, int maxRows, int maxMovesLeft, int seed) {
+
+        // Plays random games until at most maxMovesLeft moves are left and checks that searching one move per class of equivalent moves gives the same result as searching all moves
+        // AlphaBeta is run with and without move classes and both are compared with an exhaustive search
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        Random rand = new Random(seed);
+        int positions = 0;
+
+        for (int game = 0; game < amount; game++) {
+
+            // Initialization
+            int columns = rand.nextInt(maxColumns - minColumns + 1) + minColumns;
+            int rows = rand.nextInt(maxRows - minRows + 1) + minRows;
+            Board board = new Board(columns, rows, true);
+
+            if (game % 1000 == 0) {
+                System.out.println("Started verifying move classes of game " + game);
+            }
+
+            while (board.movesLeft > maxMovesLeft) {
+                int move = board.getNextAcceptableMove(rand);
+                board.registerMove(move != 0 ? move : board.getRandomLegalMoveAsInt(rand));
+            }
+            if (board.movesLeft == 0)
+                continue;
+            positions++;
+            int searchedValue = (int) Math.signum(BoardTester.solve(board, new HashMap<>()));
+            int classesValue = AlphaBeta.search(board, true);
+            int movesValue = AlphaBeta.search(board, false);
+            if (classesValue != searchedValue || movesValue != searchedValue) {
+                System.out.println("Difference: alpha-beta gives " + classesValue + " with move classes and " + movesValue + " without but search gives " + searchedValue);
+                System.out.println(board.edgesString());
+                return false;
+            }
+
+        }
+
+        System.out.println("Verified move classes in " + positions + " positions of " + amount + " games with " + minColumns + "-" + maxColumns + " columns " + minRows + "-" + maxRows + " rows.");
+        return true;
+
+    }
+
+    public static int solve(Board board, HashMap<Long, Integer> values) {
+
+        // Returns the final score of player 0 minus the final score of player 1 with optimal play, by searching all moves
+        // Should only be used for positions with few moves left, board should record undo
+
+        if (board.movesLeft == 0)
+            return board.scores[0] - board.scores[1];
+        Integer knownValue = values.get(board.hash());
+        if (knownValue != null)
+            return knownValue;
+
+        int best = (board.currentPlayer == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        for (int i = board.movesLeft - 1; i >= 0; i--) {
+            boolean maximizing = (board.currentPlayer == 0);
+            board.registerMove(board.openEdges[i]);
+            int value = BoardTester.solve(board, values);
+            board.undo();
+            best = (maximizing ? Math.max(best, value) : Math.min(best, value));
+        }
+        values.put(board.hash(), best);
+        return best;
+
+    }
+
+    public static boolean verifyEquivalent(Board expected, Board actual) {
+
+        // Verifies if two boards of the same size represent the same position
+        // Chains are compared per box (type and size of the chain it belongs to) since chain IDs and the order of the chain list differ between boards that reached the position through different moves
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        if (expected.columns != actual.columns || expected.rows != actual.rows) {
+            System.out.println("Difference: board sizes " + expected.columns + "x" + expected.rows + " and " + actual.columns + "x" + actual.rows);
+            return false;
+        }
+
+        for (int x = 0; x < 2 * expected.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * expected.rows + 1; y += 2) {
+                if (expected.hasEdge(x, y) != actual.hasEdge(x, y)) {
+                    System.out.println("Difference: edge " + x + ", " + y + " is " + expected.hasEdge(x, y) + " in one board but " + actual.hasEdge(x, y) + " in the other");
+                    return false;
+                }
+            }
+            if (expected.movesLeftInColumn(x) != actual.movesLeftInColumn(x)) {
+                System.out.println("Difference: column " + x + " has " + expected.movesLeftInColumn(x) + " moves left in one board but " + actual.movesLeftInColumn(x) + " in the other");
+                return false;
+            }
+        }
+
+        for (int x = 0; x < expected.columns; x++) {
+            for (int y = 0; y < expected.rows; y++) {
+                if (expected.valence[x][y] != actual.valence[x][y]) {
+                    System.out.println("Difference: box at " + x + ", " + y + " has valence " + expected.valence[x][y] + " in one board but " + actual.valence[x][y] + " in the other");
+                    return false;
+                }
+                int expectedChain = expected.chainAt[expected.boxToInt(x, y)];
+                int actualChain = actual.chainAt[actual.boxToInt(x, y)];
+                if ((expectedChain == Board.NO_CHAIN) != (actualChain == Board.NO_CHAIN)
+                        || (expectedChain != Board.NO_CHAIN && (expected.chainType[expectedChain] != actual.chainType[actualChain]
+                        || expected.chainSize[expectedChain] != actual.chainSize[actualChain]))) {
+                    System.out.println("Difference: box at " + x + ", " + y + " is part of different chains in both boards");
+                    return false;
+                }
+            }
+        }
+
+        if (expected.chainsAmount != actual.chainsAmount) {
+            System.out.println("Difference: " + expected.chainsAmount + " chains in one board but " + actual.chainsAmount + " in the other");
+            return false;
+        }
+
+        if (expected.movesLeft != actual.movesLeft || expected.safeMovesLeft != actual.safeMovesLeft || expected.currentPlayer != actual.currentPlayer || expected.state != actual.state
+                || expected.scores[0] != actual.scores[0] || expected.scores[1] != actual.scores[1]) {
+            System.out.println("Difference: moves left, safe moves left, current player, state or scores differ");
+            return false;
+        }
+
+        if (expected.hash() != actual.hash()) {
+            System.out.println("Difference: hash " + expected.hash() + " in one board but " + actual.hash() + " in the other");
+            return false;
+        }
+
+        // Which optimal moves are picked depends on the order of the chain list, but whether there are any doesn't
+        if (expected.hasOptimalMoves() != actual.hasOptimalMoves()) {
+            System.out.println("Difference: " + expected.optimalMoves.length + " optimal moves in one board but " + actual.optimalMoves.length + " in the other");
+            return false;
+        }
+
+        if (!Arrays.equals(expected.getHeuristicInput().values, actual.getHeuristicInput().values)) {
+            System.out.println("Difference: heuristic input " + Arrays.toString(expected.getHeuristicInput().values) + " in one board but "
+                    + Arrays.toString(actual.getHeuristicInput().values) + " in the other");
+            return false;
+        }
+
+        // No differences found
+        return true;
+
+    }
+
+    public static boolean verifyIdentical(Board expected, Board actual) {
+
+        // Verifies if two boards of the same size represent the same position with the exact same chain orders and optimal moves
+        // Meant for boards that went through the same moves, such as a copy and the original board after undoing all later moves
+        // If no differences are found, returns true
+        // If differences are found, prints information and returns false
+
+        if (!BoardTester.verifyEquivalent(expected, actual))
+            return false;
+
+        // Chain IDs and the order of the chain list are deterministic, so they should be the same as well
+        if (!Arrays.equals(expected.chainAt, actual.chainAt)) {
+            System.out.println("Difference: chainAt " + Arrays.toString(expected.chainAt) + " in one board but " + Arrays.toString(actual.chainAt) + " in the other");
+            return false;
+        }
+        for (int chain = expected.firstChain, actualChain = actual.firstChain; chain != Board.NO_CHAIN || actualChain != Board.NO_CHAIN;
+             chain = expected.nextChain[chain], actualChain = actual.nextChain[actualChain]) {
+            if (chain != actualChain) {
+                System.out.println("Difference: chain " + chain + " in one chain list but " + actualChain + " in the other");
+                return false;
+            }
+            for (int i = 0; i < expected.chainSize[chain]; i++) {
+                if (expected.chainBox(chain, i) != actual.chainBox(chain, i)) {
+                    System.out.println("Difference: chain " + chain + " has box " + expected.chainBox(chain, i) + " at index " + i + " in one board but "
+                            + actual.chainBox(chain, i) + " in the other");
+                    return false;
+                }
+            }
+        }
+
+        if (!Arrays.equals(Arrays.copyOf(expected.openEdges, expected.movesLeft), Arrays.copyOf(actual.openEdges, actual.movesLeft))) {
+            System.out.println("Difference: open edges are in a different order in both boards");
+            return false;
+        }
+
+        if (!Arrays.equals(Arrays.copyOf(expected.safeEdges, expected.safeMovesLeft), Arrays.copyOf(actual.safeEdges, actual.safeMovesLeft))) {
+            System.out.println("Difference: safe edges are in a different order in both boards");
+            return false;
+        }
+
+        if (!Arrays.equals(expected.getOptimalMoves(), actual.getOptimalMoves())) {
+            System.out.println("Difference: optimal moves " + Arrays.toString(expected.getOptimalMoves()) + " in one board but " + Arrays.toString(actual.getOptimalMoves()) + " in the other");
+            return false;
+        }
+
+        // No differences found
+        return true;
+
+    }
+
     public static boolean verifyInvariants(Board board) {
 
         // Verifies if the invariants of the board representation are met in the given board
@@ -149,7 +576,7 @@ public class BoardTester {
                 for (int[] neighborDirection : Board.neighborDirections) {
                     int nx = x + neighborDirection[0];
                     int ny = y + neighborDirection[1];
-                    if (board.edges[x + nx + 1][y + ny + 1])
+                    if (board.hasEdge(x + nx + 1, y + ny + 1))
                         actualValence++;
                 }
                 if (board.valence[x][y] != actualValence) {
@@ -159,27 +586,51 @@ public class BoardTester {
             }
         }
 
+        // Verify chain list
+        // Check that the previous links match the next links
+        // Check that the list has chainsAmount chains and that every chain ID is either in the list or unused
+        boolean[] activeChains = new boolean[board.columns * board.rows];
+        int listedChains = 0;
+        for (int chain = board.firstChain, previous = Board.NO_CHAIN; chain != Board.NO_CHAIN; previous = chain, chain = board.nextChain[chain]) {
+            if (board.previousChain[chain] != previous || activeChains[chain]) {
+                System.out.println("Invariant violation: chain list is broken at chain " + chain);
+                return false;
+            }
+            activeChains[chain] = true;
+            listedChains++;
+        }
+        if (listedChains != board.chainsAmount || listedChains + board.freeChainsAmount != board.columns * board.rows) {
+            System.out.println("Invariant violation: chain list has " + listedChains + " chains but " + board.chainsAmount + " chains and " + board.freeChainsAmount + " unused IDs are stored");
+            return false;
+        }
+        for (int i = 0; i < board.freeChainsAmount; i++) {
+            if (activeChains[board.freeChains[i]]) {
+                System.out.println("Invariant violation: chain " + board.freeChains[i] + " is in the chain list but also unused");
+                return false;
+            }
+        }
+
         // Verify chainAt matrix
         // Check that box is part of chain iff valence is 2 or 3
         // Check that box which is part of chain according to chainAt matrix is also part of chain according to chain
         // Check that chain which box is part of according to chainAt matrix is also in the list of chains
         for (int x = 0; x < board.columns; x++) {
             for (int y = 0; y < board.rows; y++) {
-                Chain chain = board.chainAt[x][y];
+                int chain = board.chainAt[board.boxToInt(x, y)];
                 boolean shouldBeInChain = (board.valence[x][y] == 2 || board.valence[x][y] == 3);
-                if (chain != null && !shouldBeInChain) {
+                if (chain != Board.NO_CHAIN && !shouldBeInChain) {
                     System.out.println("Invariant violation: box at " + x + ", " + y + " is part of chain " + chain + " according to chainAt matrix but has valence " + board.valence[x][y]);
                     return false;
-                } else if (chain == null && shouldBeInChain) {
+                } else if (chain == Board.NO_CHAIN && shouldBeInChain) {
                     System.out.println("Invariant violation: box at " + x + ", " + y + " isn't part of any chain according to chainAt matrix but has valence " + board.valence[x][y]);
                     return false;
-                } else if (chain != null) {
+                } else if (chain != Board.NO_CHAIN) {
                     // Only need to perform further verifications if box is actually in chain
-                    if (!chain.boxes.contains(board.boxToInt(x, y))) {
+                    if (board.chainIndexOf(chain, board.boxToInt(x, y)) == -1) {
                         System.out.println("Invariant violation: box at " + x + ", " + y + " is part of chain " + chain + " according to chainAt matrix but not according to chain itself");
                         return false;
                     }
-                    if (!board.chains.contains(chain)) {
+                    if (!activeChains[chain]) {
                         System.out.println("Invariant violation: box at " + x + ", " + y + " is part of chain " + chain + " but the board's list of chains doesn't contain this chain");
                         return false;
                     }
@@ -188,7 +639,6 @@ public class BoardTester {
         }
 
         // Verify chains
-        // Check that the chain size is equal to the size of the boxes list
         // Check that the chain size is at least 1
         // Check that each box in the chain is also part of this chain according to chainAt matrix
         // Check that all but first and last boxes have valence 2
@@ -199,32 +649,30 @@ public class BoardTester {
         // - LOOP: Check that first and last boxes have valence 2 and are adjacent and connected
         // - HALF_OPEN: Check that first box has valence 3 and last box has valence 2
         // - CLOSED: Check that first and last boxes have valence 3 and that chain size is larger than 1
-        for (Chain chain : board.chains) {
+        for (int chain = board.firstChain; chain != Board.NO_CHAIN; chain = board.nextChain[chain]) {
 
-            if (chain.size != chain.boxes.size()) {
-                System.out.println("Invariant violation: chain " + chain + " has stored size " + chain.size + " but actual size " + chain.boxes.size());
-                return false;
-            }
+            int size = board.chainSize[chain];
+            ChainType type = board.chainType[chain];
 
-            if (chain.size == 0) {
+            if (size == 0) {
                 System.out.println("Invariant violation: chain " + chain + " has size 0");
                 return false;
             }
 
-            for (int i = 0; i < chain.size; i++) {
+            for (int i = 0; i < size; i++) {
 
-                int[] boxCoords = board.intToBox(chain.boxes.get(i));
+                int[] boxCoords = board.intToBox(board.chainBox(chain, i));
                 int x1 = boxCoords[0];
                 int y1 = boxCoords[1];
 
-                if (board.chainAt[x1][y1] != chain) {
+                if (board.chainAt[board.boxToInt(x1, y1)] != chain) {
                     System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is part of chain " + chain + " according to chain itself but not according to chainAt");
                     return false;
                 }
 
                 // Check connectivity
-                if (i < chain.size - 1) {
-                    boxCoords = board.intToBox(chain.boxes.get(i + 1));
+                if (i < size - 1) {
+                    boxCoords = board.intToBox(board.chainBox(chain, i + 1));
                     int x2 = boxCoords[0];
                     int y2 = boxCoords[1];
                     if (!board.boxesAdjacentAndConnected(x1, y1, x2, y2)) {
@@ -236,30 +684,30 @@ public class BoardTester {
 
                 if (i == 0) {
                     // First box checks
-                    if (chain.type == ChainType.OPEN || chain.type == ChainType.LOOP) {
+                    if (type == ChainType.OPEN || type == ChainType.LOOP) {
                         if (board.valence[x1][y1] != 2) {
-                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the first box in chain " + chain + " of type " + chain.type
+                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the first box in chain " + chain + " of type " + type
                                     + " but has valence " + board.valence[x1][y1]);
                             return false;
                         }
                     } else {
                         if (board.valence[x1][y1] != 3) {
-                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the first box in chain " + chain + " of type " + chain.type
+                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the first box in chain " + chain + " of type " + type
                                     + " but has valence " + board.valence[x1][y1]);
                             return false;
                         }
                     }
-                } else if (i == chain.size - 1) {
+                } else if (i == size - 1) {
                     // Last box checks
-                    if (chain.type != ChainType.CLOSED) {
+                    if (type != ChainType.CLOSED) {
                         if (board.valence[x1][y1] != 2) {
-                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the last box in chain " + chain + " of type " + chain.type
+                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the last box in chain " + chain + " of type " + type
                                     + " but has valence " + board.valence[x1][y1]);
                             return false;
                         }
                     } else {
                         if (board.valence[x1][y1] != 3) {
-                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the last box in chain " + chain + " of type " + chain.type
+                            System.out.println("Invariant violation: box at " + x1 + ", " + y1 + " is the last box in chain " + chain + " of type " + type
                                     + " but has valence " + board.valence[x1][y1]);
                             return false;
                         }
@@ -275,16 +723,16 @@ public class BoardTester {
             }
 
             // ChainType-specific checks
-            if (chain.type == ChainType.LOOP) {
+            if (type == ChainType.LOOP) {
 
-                int[] boxCoords = board.intToBox(chain.boxes.get(0));
+                int[] boxCoords = board.intToBox(board.chainBox(chain, 0));
                 int x1 = boxCoords[0];
                 int y1 = boxCoords[1];
-                boxCoords = board.intToBox(chain.boxes.get(chain.size - 1));
+                boxCoords = board.intToBox(board.chainBox(chain, size - 1));
                 int x2 = boxCoords[0];
                 int y2 = boxCoords[1];
                 if (!board.boxesAdjacentAndConnected(x1, y1, x2, y2)) {
-                    System.out.println("Invariant violation: chain " + chain + " of type " + chain.type + " has first box at " + x1 + ", " + y1
+                    System.out.println("Invariant violation: chain " + chain + " of type " + type + " has first box at " + x1 + ", " + y1
                             + " and last box at " + x2 + ", " + y2 + " but these aren't adjacent and connected");
                     return false;
                 }
@@ -292,8 +740,8 @@ public class BoardTester {
             } else {
 
                 // Check if first and last boxes (if they have valence 2) are connected to at least one box without a chain
-                for (int i = 0; i < chain.size; i += chain.size - 1) {
-                    int[] boxCoords = board.intToBox(chain.boxes.get(i));
+                for (int i = 0; i < size; i += size - 1) {
+                    int[] boxCoords = board.intToBox(board.chainBox(chain, i));
                     int x = boxCoords[0];
                     int y = boxCoords[1];
                     if (board.valence[x][y] == 2) {
@@ -302,24 +750,24 @@ public class BoardTester {
                             int nx = x + neighborDirection[0];
                             int ny = y + neighborDirection[1];
                             // Neighbor can be off-board, boxesConnected will simply take the edge in between
-                            if (board.boxesConnected(x, y, nx, ny) && (!board.onBoard(nx, ny) || board.chainAt[nx][ny] == null)) {
+                            if (board.boxesConnected(x, y, nx, ny) && (!board.onBoard(nx, ny) || board.chainAt[board.boxToInt(nx, ny)] == Board.NO_CHAIN)) {
                                 found = true;
                                 break;
                             }
                         }
                         if (!found) {
-                            System.out.println("Invariant violation: chain " + chain + " of type " + chain.type + " has first/last box at " + x + ", " + y
+                            System.out.println("Invariant violation: chain " + chain + " of type " + type + " has first/last box at " + x + ", " + y
                                     + " but couldn't find an adjacent and connected box without a chain");
                             return false;
                         }
                     }
-                    if (chain.size == 1)
+                    if (size == 1)
                         break;
                 }
 
-                if (chain.type == ChainType.CLOSED) {
-                    if (chain.size == 1) {
-                        System.out.println("Invariant violation: chain " + chain + " of type " + chain.type + " has size 1");
+                if (type == ChainType.CLOSED) {
+                    if (size == 1) {
+                        System.out.println("Invariant violation: chain " + chain + " of type " + type + " has size 1");
                         return false;
                     }
                 }
@@ -327,6 +775,132 @@ public class BoardTester {
 
         }
 
+        // Verify open edges
+        // Check that the first movesLeft open edges are exactly the edges without a line, and that the index points to their positions
+        int openEdges = 0;
+        for (int x = 0; x < 2 * board.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * board.rows + 1; y += 2) {
+                if (!board.hasEdge(x, y)) {
+                    int position = board.openEdgeIndex[board.edgeToInt(x, y)];
+                    if (position >= board.movesLeft || board.openEdges[position] != board.edgeToInt(x, y)) {
+                        System.out.println("Invariant violation: edge at " + x + ", " + y + " is open but not at its position " + position + " in the open edges");
+                        return false;
+                    }
+                    openEdges++;
+                }
+            }
+        }
+        if (openEdges != board.movesLeft) {
+            System.out.println("Invariant violation: " + openEdges + " open edges but " + board.movesLeft + " moves left");
+            return false;
+        }
+
+        // Verify safe edges and move categories
+        // Check that the first safeMovesLeft safe edges are exactly the legal moves categorized as safe, and that the categories match the valences and chains next to the moves
+        int safeEdges = 0;
+        for (int i = 0; i < board.movesLeft; i++) {
+            int move = board.openEdges[i];
+            int position = board.safeEdgeIndex[move];
+            boolean inSafeEdges = position < board.safeMovesLeft && board.safeEdges[position] == move;
+            MoveCategory category = board.getMoveCategory(move);
+            if (inSafeEdges != (category == MoveCategory.SAFE)) {
+                System.out.println("Invariant violation: move " + move + " has category " + category + " but is " + (inSafeEdges ? "" : "not ") + "in the safe edges");
+                return false;
+            }
+            if (inSafeEdges)
+                safeEdges++;
+            // Count the lines around the boxes next to the move from the edges
+            int x = move % (2 * board.columns + 1);
+            int y = move / (2 * board.columns + 1);
+            int maxLines = 0;
+            for (int side = 0; side < 2; side++) {
+                int boxX = (x % 2 == 0 ? x / 2 - 1 + side : x / 2);
+                int boxY = (x % 2 == 0 ? y / 2 : y / 2 - 1 + side);
+                if (boxX >= 0 && boxX < board.columns && boxY >= 0 && boxY < board.rows) {
+                    int lines = 0;
+                    for (int[] neighborDirection : Board.neighborDirections) {
+                        if (board.hasEdge(2 * boxX + 1 + neighborDirection[0], 2 * boxY + 1 + neighborDirection[1]))
+                            lines++;
+                    }
+                    maxLines = Math.max(maxLines, lines);
+                }
+            }
+            if ((maxLines <= 1) != (category == MoveCategory.SAFE) || (maxLines == 3) != (category == MoveCategory.CAPTURE)) {
+                System.out.println("Invariant violation: move " + move + " has category " + category + " but gives a box its line number " + (maxLines + 1));
+                return false;
+            }
+            if ((board.getSacrificeSize(move) > 0) != (category == MoveCategory.OPENS_CHAIN || category == MoveCategory.SACRIFICE)) {
+                System.out.println("Invariant violation: move " + move + " has category " + category + " but sacrifices " + board.getSacrificeSize(move) + " boxes");
+                return false;
+            }
+        }
+        if (safeEdges != board.safeMovesLeft) {
+            System.out.println("Invariant violation: " + safeEdges + " safe edges but " + board.safeMovesLeft + " safe moves left");
+            return false;
+        }
+
+        // Verify move classes
+        // Check that the iterator yields every class once, that every legal move belongs to the class of a yielded move and that the class sizes add up to movesLeft
+        int[] classSizes = new int[(2 * board.columns + 1) * (2 * board.rows + 1)];
+        int classMoves = 0;
+        for (MoveClassIterator it = board.getMoveClassIterator(); it.hasNext(); ) {
+            int move = it.getNextMove();
+            if (board.hasEdge(move % (2 * board.columns + 1), move / (2 * board.columns + 1)) || classSizes[move] != 0) {
+                System.out.println("Invariant violation: move class iterator yielded illegal or repeated move " + move);
+                return false;
+            }
+            classSizes[move] = it.classSize;
+            classMoves += it.classSize;
+        }
+        if (classMoves != board.movesLeft) {
+            System.out.println("Invariant violation: move classes have " + classMoves + " moves but " + board.movesLeft + " moves left");
+            return false;
+        }
+        for (int i = 0; i < board.movesLeft; i++) {
+            int representative = MoveClassIterator.representative(board, board.openEdges[i]);
+            if (classSizes[representative] == 0) {
+                System.out.println("Invariant violation: move " + board.openEdges[i] + " has representative " + representative + " which wasn't yielded by the move class iterator");
+                return false;
+            }
+            classSizes[representative]--;
+        }
+        for (int size : classSizes) {
+            if (size != 0) {
+                System.out.println("Invariant violation: move class sizes don't match the amount of moves with that representative");
+                return false;
+            }
+        }
+
+        // Verify hash
+        if (board.hash() != board.zobrist.hash(board)) {
+            System.out.println("Invariant violation: stored hash " + board.hash() + " but calculated " + board.zobrist.hash(board));
+            return false;
+        }
+
+        // Verify heuristic features
+        // Check that the incrementally maintained features match the heuristic input calculated from scratch
+        double[] expectedInput = new double[Board.heuristicInputSize];
+        expectedInput[0] = board.scores[board.currentPlayer];
+        expectedInput[1] = board.scores[(board.currentPlayer + 1) % 2];
+        int longOpenChains = 0;
+        for (int chain = board.firstChain; chain != Board.NO_CHAIN; chain = board.nextChain[chain]) {
+            if (board.chainType[chain] == ChainType.OPEN) {
+                expectedInput[1 + Math.min(Board.maxOpenChainSize, board.chainSize[chain])]++;
+                if (board.chainSize[chain] >= 3)
+                    longOpenChains++;
+            } else if (board.chainType[chain] == ChainType.LOOP) {
+                expectedInput[2 + Board.maxOpenChainSize + -2 + Math.min(Board.maxLoopSize, board.chainSize[chain]) / 2]++;
+            }
+        }
+        expectedInput[expectedInput.length - 1] = ((longOpenChains + (board.rows + 1) * (board.columns + 1) + board.currentPlayer + 1) % 2) * 2 - 1;
+        double[] actualInput = new double[Board.heuristicInputSize];
+        Arrays.fill(actualInput, Double.NaN); // Make sure every feature gets written
+        board.fillHeuristicInput(actualInput);
+        if (!Arrays.equals(expectedInput, actualInput)) {
+            System.out.println("Invariant violation: heuristic input " + Arrays.toString(actualInput) + " but calculated " + Arrays.toString(expectedInput) + " from the chains");
+            return false;
+        }
+
         // No checks failed
         return true;
 
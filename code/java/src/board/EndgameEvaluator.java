@@ -0,0 +1,147 @@
+package board;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class EndgameEvaluator {
+
+    // Exact evaluation of simple loony endgames: positions in which every box that's left is part of an open chain of at least 3 boxes or a loop of at least 4 boxes
+    // Every move in such a position opens a chain or loop, after which the other player, the controller, either takes all of its boxes and has to open the next one,
+    // or takes all but 2 boxes of a chain or all but 4 boxes of a loop, leaving those to the opener, who then has to open the next one
+    // The net amount of boxes the controller gets from the rest of the game only depends on the sizes of the chains and loops, see value
+    // Based on E. Berlekamp, The Dots and Boxes Game, and K. Buzzard and M. Ciere, Playing simple loony dots and boxes endgames optimally
+
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    public static int scoreDifference(Board board) {
+
+        // Returns the final score of player 0 minus the final score of player 1 with optimal play if board is a simple loony endgame, NO_VALUE otherwise
+        // Takes a single pass over the chains, plus a small search if the controlled value doesn't decide, see value
+
+        // Every box that isn't taken has to be in an open chain or loop that's long enough
+        // Boxes with valence 2 or 3 are always in a chain, so if the chains contain all boxes, there are no boxes with valence 0 or 1 left
+        int boxesLeft = board.columns * board.rows - board.scores[0] - board.scores[1];
+        int size = 0;
+        int chains = 0;
+        int loops = 0;
+        for (int chain = board.firstChain; chain != Board.NO_CHAIN; chain = board.nextChain[chain]) {
+            if (board.chainType[chain] == ChainType.OPEN && board.chainSize[chain] >= 3) {
+                chains++;
+            } else if (board.chainType[chain] == ChainType.LOOP && board.chainSize[chain] >= 4) {
+                loops++;
+            } else {
+                return EndgameEvaluator.NO_VALUE;
+            }
+            size += board.chainSize[chain];
+        }
+        if (size != boxesLeft)
+            return EndgameEvaluator.NO_VALUE;
+
+        int value = EndgameEvaluator.controlledValue(size, chains, loops);
+        if (loops > 0 || value < 2) {
+            int[] chainSizes = new int[chains];
+            int[] loopSizes = new int[loops];
+            chains = 0;
+            loops = 0;
+            for (int chain = board.firstChain; chain != Board.NO_CHAIN; chain = board.nextChain[chain]) {
+                if (board.chainType[chain] == ChainType.OPEN) {
+                    chainSizes[chains++] = board.chainSize[chain];
+                } else {
+                    loopSizes[loops++] = board.chainSize[chain];
+                }
+            }
+            value = EndgameEvaluator.value(chainSizes, loopSizes);
+        }
+
+        // The current player has to open the first chain or loop, so the other player is in control
+        int difference = board.scores[0] - board.scores[1];
+        return (board.getCurrentPlayer() == 0 ? difference - value : difference + value);
+
+    }
+
+    public static int controlledValue(int size, int chains, int loops) {
+        // Net amount of boxes the controller gets by keeping control until the last chain or loop, which it takes completely
+        // Keeping control costs 4 boxes per chain and 8 per loop, except for the last one
+        if (chains + loops == 0)
+            return 0;
+        return size - 4 * chains - 8 * loops + (chains > 0 ? 4 : 8);
+    }
+
+    public static int value(int[] chainSizes, int[] loopSizes) {
+
+        // Returns the net amount of boxes the controller gets from open chains and loops of the given sizes with optimal play, if the other player has to open one of them
+        // Chains should have at least 3 boxes and loops at least 4
+        // Without loops, the controlled value is the value if it's at least 2: keeping control is optimal for the controller and the opener can't do better
+        // Otherwise, tries opening every distinct chain and loop size and remembers the values of the remaining sets of sizes
+        // With loops, the controller can sometimes do better than the controlled value by giving up control, e.g. a 10-loop and a 3-chain have controlled value 5 but value 7
+
+        // Group equal sizes, chains first
+        int[] sortedChains = chainSizes.clone();
+        int[] sortedLoops = loopSizes.clone();
+        Arrays.sort(sortedChains);
+        Arrays.sort(sortedLoops);
+        int[] sizes = new int[sortedChains.length + sortedLoops.length];
+        int[] counts = new int[sizes.length];
+        int types = 0;
+        for (int i = 0; i < sortedChains.length; i++) {
+            if (i == 0 || sortedChains[i] != sortedChains[i - 1])
+                sizes[types++] = sortedChains[i];
+            counts[types - 1]++;
+        }
+        int firstLoopType = types;
+        for (int i = 0; i < sortedLoops.length; i++) {
+            if (i == 0 || sortedLoops[i] != sortedLoops[i - 1])
+                sizes[types++] = sortedLoops[i];
+            counts[types - 1]++;
+        }
+
+        // A set of sizes is identified by its counts per size in a mixed radix
+        long[] radix = new long[types];
+        long key = 0;
+        for (int type = 0; type < types; type++) {
+            radix[type] = (type == 0 ? 1 : radix[type - 1] * (counts[type - 1] + 1));
+            key += counts[type] * radix[type];
+        }
+
+        int size = 0;
+        for (int chainSize : chainSizes) {
+            size += chainSize;
+        }
+        for (int loopSize : loopSizes) {
+            size += loopSize;
+        }
+        return EndgameEvaluator.value(Arrays.copyOf(sizes, types), counts, firstLoopType, radix, key, size, chainSizes.length, loopSizes.length, new HashMap<>());
+
+    }
+
+    private static int value(int[] sizes, int[] counts, int firstLoopType, long[] radix, long key, int size, int chains, int loops, HashMap<Long, Integer> values) {
+
+        int controlledValue = EndgameEvaluator.controlledValue(size, chains, loops);
+        if (chains + loops == 0 || (loops == 0 && controlledValue >= 2))
+            return controlledValue;
+        Integer knownValue = values.get(key);
+        if (knownValue != null)
+            return knownValue;
+
+        // The opener picks the chain or loop that's worst for the controller
+        // The controller then picks the best of taking all boxes, after which it has to open the next one, and leaving 2 boxes of a chain or 4 of a loop to the opener
+        int value = Integer.MAX_VALUE;
+        for (int type = 0; type < sizes.length; type++) {
+            if (counts[type] == 0)
+                continue;
+            boolean loop = (type >= firstLoopType);
+            counts[type]--;
+            int restValue = EndgameEvaluator.value(sizes, counts, firstLoopType, radix, key - radix[type], size - sizes[type], chains - (loop ? 0 : 1), loops - (loop ? 1 : 0), values);
+            counts[type]++;
+            if (loop) {
+                value = Math.min(value, Math.max(sizes[type] - restValue, sizes[type] - 8 + restValue));
+            } else {
+                value = Math.min(value, Math.max(sizes[type] - restValue, sizes[type] - 4 + restValue));
+            }
+        }
+        values.put(key, value);
+        return value;
+
+    }
+
+}
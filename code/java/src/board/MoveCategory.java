@@ -0,0 +1,5 @@
+package board;
+
+public enum MoveCategory {
+    SAFE, CAPTURE, OPENS_CHAIN, SACRIFICE
+}
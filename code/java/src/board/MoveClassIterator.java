@@ -0,0 +1,133 @@
+package board;
+
+public class MoveClassIterator {
+
+    // Iterates over the legal moves of a board, but only yields one representative move per class of equivalent moves
+    // Classes are derived from the chains on the board:
+    // - All edges of a loop form one class
+    // - All edges in between the boxes of an open chain of size 3 or more form one class, together with its end edges that are on the border of the board
+    // - Every other legal move forms a class on its own
+    // Opening a long chain or loop anywhere gives the opponent the same options (take everything or leave a hand-out), so search only has to try one of them
+    // The representative of a chain class is the edge in between box 0 and 1 of the chain, see updateOptimalMoves
+    // Goes through board.openEdges in order, so moves played on the board in between getNextMove calls should be undone before the next call
+
+    public Board board;
+    public boolean classes; // If false, every legal move is yielded as a class of its own, to compare search with and without classes
+    public int index; // Position in board.openEdges of the next representative, board.movesLeft if there are none left
+    public int classSize; // Amount of moves in the class of the move that was returned last
+
+    public MoveClassIterator(Board board) {
+        this(board, true);
+    }
+
+    public MoveClassIterator(Board board, boolean classes) {
+        this.board = board;
+        this.classes = classes;
+        this.index = 0;
+        this.classSize = 0;
+        nextPos();
+    }
+
+    public boolean hasNext() {
+        return this.index < this.board.movesLeft;
+    }
+
+    public int getNextMove() {
+        // Yields the representative of the next class, 0 if there are none left
+        if (hasNext()) {
+            int move = this.board.openEdges[this.index];
+            int chain = (this.classes ? MoveClassIterator.classChain(this.board, move) : Board.NO_CHAIN);
+            this.classSize = (chain == Board.NO_CHAIN ? 1 : MoveClassIterator.chainClassSize(this.board, chain));
+            this.index++;
+            nextPos();
+            return move;
+        }
+        return 0;
+    }
+
+    private void nextPos() {
+        // Skips open edges that aren't the representative of their class
+        while (this.classes && this.index < this.board.movesLeft) {
+            int move = this.board.openEdges[this.index];
+            if (MoveClassIterator.representative(this.board, move) == move)
+                return;
+            this.index++;
+        }
+    }
+
+    public static int representative(Board board, int move) {
+        // Returns the representative of the class of the given legal move
+        int chain = MoveClassIterator.classChain(board, move);
+        if (chain == Board.NO_CHAIN)
+            return move;
+        int box1 = board.chainBox(chain, 0);
+        int box2 = board.chainBox(chain, 1);
+        return board.edgeToInt(box1 % board.columns + box2 % board.columns + 1, box1 / board.columns + box2 / board.columns + 1);
+    }
+
+    public static int classChain(Board board, int move) {
+
+        // Returns the long open chain or loop whose class the given legal move belongs to, NO_CHAIN if the move forms a class on its own
+
+        int x = move % (2 * board.columns + 1);
+        int y = move / (2 * board.columns + 1);
+
+        // Find the chains of the boxes on both sides of the edge, off-board boxes are skipped
+        int chain1 = Board.NO_CHAIN;
+        int chain2 = Board.NO_CHAIN;
+        boolean border;
+        if (x % 2 == 0) {
+            // Vertical edge, left and right boxes
+            border = (x / 2 - 1 < 0 || x / 2 >= board.columns);
+            if (x / 2 - 1 >= 0)
+                chain1 = board.chainAt[board.boxToInt(x / 2 - 1, y / 2)];
+            if (x / 2 < board.columns)
+                chain2 = board.chainAt[board.boxToInt(x / 2, y / 2)];
+        } else {
+            // Horizontal edge, top and bottom boxes
+            border = (y / 2 - 1 < 0 || y / 2 >= board.rows);
+            if (y / 2 - 1 >= 0)
+                chain1 = board.chainAt[board.boxToInt(x / 2, y / 2 - 1)];
+            if (y / 2 < board.rows)
+                chain2 = board.chainAt[board.boxToInt(x / 2, y / 2)];
+        }
+
+        if (border) {
+            // Only the end edges of open chains can be on the border
+            int chain = (chain1 != Board.NO_CHAIN ? chain1 : chain2);
+            if (chain != Board.NO_CHAIN && board.chainType[chain] == ChainType.OPEN && board.chainSize[chain] >= 3)
+                return chain;
+        } else if (chain1 == chain2 && chain1 != Board.NO_CHAIN) {
+            // An open edge in between two boxes of the same chain always connects consecutive boxes of that chain
+            ChainType type = board.chainType[chain1];
+            if (type == ChainType.LOOP || (type == ChainType.OPEN && board.chainSize[chain1] >= 3))
+                return chain1;
+        }
+        return Board.NO_CHAIN;
+
+    }
+
+    public static int chainClassSize(Board board, int chain) {
+        // Returns the amount of moves in the class of the given long open chain or loop
+        int size = board.chainSize[chain];
+        if (board.chainType[chain] == ChainType.LOOP)
+            return size;
+        return size - 1 + MoveClassIterator.borderEnd(board, board.chainBox(chain, 0))
+                + MoveClassIterator.borderEnd(board, board.chainBox(chain, size - 1));
+    }
+
+    private static int borderEnd(Board board, int box) {
+        // Returns 1 if the end edge of the chain at the given end box is on the border, 0 otherwise
+        // The other open edge of the box leads to the next box of the chain, so it's never on the border
+        int x = box % board.columns;
+        int y = box / board.columns;
+        for (int[] neighborDirection : Board.neighborDirections) {
+            int nx = x + neighborDirection[0];
+            int ny = y + neighborDirection[1];
+            if (!board.hasEdge(2 * x + 1 + neighborDirection[0], 2 * y + 1 + neighborDirection[1]) && !board.onBoard(nx, ny))
+                return 1;
+        }
+        return 0;
+    }
+
+}
@@ -24,7 +24,7 @@ public class MoveIterator {
         // Yields the next legal move
         if (hasNext()) {
             while (true) {
-                if (!this.board.edges[this.x][this.y]) {
+                if (!this.board.hasEdge(this.x, this.y)) {
                     int prevX = this.x;
                     int prevY = this.y;
                     this.count++;
@@ -1,24 +1,35 @@
 package board;
 
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Random;
 
 public class RandomMoveGenerator {
 
-    // Allows MCTS to quickly generate new random moves
-    // Creation costs O(columns) time, getting a new move costs O(columns + rows) time
+    // Allows MCTS to quickly generate new random moves without replacement
+    // Creation costs O(moves left) time, getting a new move costs O(1) time
+    // Works like a Fisher-Yates shuffle that is performed lazily: moves that haven't been generated yet are kept in the first movesLeft positions of moves
 
     public Board board;
     public int movesLeft;
-    public int[] movesLeftPerColumn; // Used to quickly iterate and random-access moves
-    public HashSet<Integer> generatedMoves;
+    public int[] moves; // Copy of the board's open edges, generated moves are swapped to the back
 
     public RandomMoveGenerator(Board board) {
         this.board = board;
         this.movesLeft = board.movesLeft;
-        this.movesLeftPerColumn = Arrays.copyOf(board.movesLeftPerColumn, board.movesLeftPerColumn.length);
-        this.generatedMoves = new HashSet<>();
+        this.moves = new int[board.movesLeft];
+        System.arraycopy(board.openEdges, 0, this.moves, 0, board.movesLeft);
+    }
+
+    public RandomMoveGenerator(Board board, boolean moveClasses) {
+        // If moveClasses is true, only generates one representative move per class of equivalent moves, see MoveClassIterator
+        this(board);
+        if (moveClasses) {
+            this.movesLeft = 0;
+            for (MoveClassIterator it = board.getMoveClassIterator(); it.hasNext(); ) {
+                this.moves[this.movesLeft++] = it.getNextMove();
+            }
+            this.moves = Arrays.copyOf(this.moves, this.movesLeft);
+        }
     }
 
     public boolean hasMovesLeft() {
@@ -27,44 +38,36 @@ public class RandomMoveGenerator {
 
     public void reverseMove(int move) {
         // Adds moves again to possible set of moves for this generator
-        int[] edge = this.board.intToEdge(move);
-        this.movesLeft++;
-        this.movesLeftPerColumn[edge[0]]++;
-        this.generatedMoves.remove(move);
+        // Usually called for the last generated move, which is found right away
+        for (int i = this.movesLeft; i < this.moves.length; i++) {
+            if (this.moves[i] == move) {
+                this.moves[i] = this.moves[this.movesLeft];
+                this.moves[this.movesLeft] = move;
+                this.movesLeft++;
+                return;
+            }
+        }
     }
 
     public int getRandomLegalMoveAsInt(Random rand) {
-        return this.board.edgeToInt(getRandomLegalMove(rand));
+        // Returns 0 if all moves have been generated already
+        if (this.movesLeft == 0) {
+            return 0;
+        } else {
+            int index = rand.nextInt(this.movesLeft);
+            int move = this.moves[index];
+            this.movesLeft--;
+            this.moves[index] = this.moves[this.movesLeft];
+            this.moves[this.movesLeft] = move;
+            return move;
+        }
     }
 
     public int[] getRandomLegalMove(Random rand) {
         if (this.movesLeft == 0) {
             return null;
         } else {
-            int index = rand.nextInt(this.movesLeft);
-            for (int x = 0; x < 2 * this.board.columns + 1; x++) {
-                if (index >= this.movesLeftPerColumn[x]) {
-                    // Move is not in this column, move on
-                    index -= this.movesLeftPerColumn[x];
-                    continue;
-                } else {
-                    // Move is in this column, iterate through rows
-                    for (int y = (x + 1) % 2; y < 2 * this.board.rows + 1; y += 2) {
-                        if (!this.board.edges[x][y] && !this.generatedMoves.contains(this.board.edgeToInt(x, y))) {
-                            // Edge is open on board and hasn't been generated as an earlier move yet
-                            if (index == 0) {
-                                this.movesLeft--;
-                                this.movesLeftPerColumn[x]--;
-                                this.generatedMoves.add(this.board.edgeToInt(x, y));
-                                return new int[]{x, y};
-                            }
-                            index--;
-                        }
-                    }
-                }
-            }
-            assert (false);
-            return null;
+            return this.board.intToEdge(getRandomLegalMoveAsInt(rand));
         }
     }
 
@@ -1,8 +0,0 @@
-package board;
-
-public interface SubTransaction {
-
-    // Stores how to reverse box chain update
-    void undo();
-
-}
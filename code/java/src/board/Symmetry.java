@@ -0,0 +1,184 @@
+package board;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Symmetry {
+
+    // Canonicalizes board positions under the symmetries of the grid
+    // Every grid has 4 symmetries (identity, both mirrors and rotation by 180 degrees), square grids have 4 more (both diagonal mirrors and rotations by 90 and 270 degrees)
+    // The canonical transform of a position is the one with the smallest edge encoding, so symmetric positions have the same canonical encoding and hash
+    // Tables are shared by all boards of the same size
+
+    private static final ConcurrentHashMap<Integer, Symmetry> tables = new ConcurrentHashMap<>();
+
+    public final int columns, rows;
+    public final int transformsAmount;
+    public final int[][] edgeMaps; // edgeMaps[transform][edge] is the ID of the edge it's mapped to, see Board.edgeToInt
+    public final int[][] inverseEdgeMaps; // Maps edges of the transformed board back to the original board
+    public final int[] edges; // IDs of all actual edges (rather than nodes or boxes)
+    public final int wordsPerEncoding;
+
+    private Symmetry(int columns, int rows) {
+
+        this.columns = columns;
+        this.rows = rows;
+        this.transformsAmount = (columns == rows ? 8 : 4);
+        int width = 2 * columns;
+        int height = 2 * rows;
+        int edgeIds = (width + 1) * (height + 1);
+
+        this.edges = new int[2 * columns * rows + columns + rows];
+        int i = 0;
+        for (int x = 0; x < width + 1; x++) {
+            for (int y = (x + 1) % 2; y < height + 1; y += 2) {
+                this.edges[i++] = y * (width + 1) + x;
+            }
+        }
+
+        this.edgeMaps = new int[this.transformsAmount][edgeIds];
+        this.inverseEdgeMaps = new int[this.transformsAmount][edgeIds];
+        for (int transform = 0; transform < this.transformsAmount; transform++) {
+            for (int x = 0; x < width + 1; x++) {
+                for (int y = 0; y < height + 1; y++) {
+                    int tx, ty;
+                    switch (transform) {
+                        case 0:
+                            // Identity
+                            tx = x;
+                            ty = y;
+                            break;
+                        case 1:
+                            // Mirror left to right
+                            tx = width - x;
+                            ty = y;
+                            break;
+                        case 2:
+                            // Mirror top to bottom
+                            tx = x;
+                            ty = height - y;
+                            break;
+                        case 3:
+                            // Rotate 180 degrees
+                            tx = width - x;
+                            ty = height - y;
+                            break;
+                        case 4:
+                            // Mirror along main diagonal
+                            tx = y;
+                            ty = x;
+                            break;
+                        case 5:
+                            // Rotate 90 degrees
+                            tx = width - y;
+                            ty = x;
+                            break;
+                        case 6:
+                            // Rotate 270 degrees
+                            tx = y;
+                            ty = height - x;
+                            break;
+                        default:
+                            // Mirror along other diagonal
+                            tx = width - y;
+                            ty = height - x;
+                            break;
+                    }
+                    this.edgeMaps[transform][y * (width + 1) + x] = ty * (width + 1) + tx;
+                    this.inverseEdgeMaps[transform][ty * (width + 1) + tx] = y * (width + 1) + x;
+                }
+            }
+        }
+
+        this.wordsPerEncoding = (edgeIds + 63) / 64;
+
+    }
+
+    public static Symmetry forSize(int columns, int rows) {
+        return Symmetry.tables.computeIfAbsent((columns << 16) | rows, key -> new Symmetry(columns, rows));
+    }
+
+    public static Symmetry forBoard(Board board) {
+        return Symmetry.forSize(board.columns, board.rows);
+    }
+
+    public int transformMove(int transform, int edge) {
+        // Maps a move on the original board to the transformed board
+        return this.edgeMaps[transform][edge];
+    }
+
+    public int inverseTransformMove(int transform, int edge) {
+        // Maps a move on the transformed board back to the original board
+        return this.inverseEdgeMaps[transform][edge];
+    }
+
+    public long[] encode(Board board, int transform) {
+        // Returns the edges of the transformed board as a bit set indexed by edge ID
+        long[] res = new long[this.wordsPerEncoding];
+        for (int edge : this.edges) {
+            if (board.hasEdge(edge % (2 * this.columns + 1), edge / (2 * this.columns + 1))) {
+                int transformed = this.edgeMaps[transform][edge];
+                res[transformed >>> 6] |= 1L << transformed;
+            }
+        }
+        return res;
+    }
+
+    public int canonicalTransform(Board board) {
+
+        // Returns the transform which gives the smallest edge encoding
+        // Ties (for symmetric positions) are broken by the lowest transform, every one of them gives the same canonical position
+
+        // Encode all transforms at once
+        long[][] encodings = new long[this.transformsAmount][this.wordsPerEncoding];
+        for (int edge : this.edges) {
+            if (board.hasEdge(edge % (2 * this.columns + 1), edge / (2 * this.columns + 1))) {
+                for (int transform = 0; transform < this.transformsAmount; transform++) {
+                    int transformed = this.edgeMaps[transform][edge];
+                    encodings[transform][transformed >>> 6] |= 1L << transformed;
+                }
+            }
+        }
+
+        int best = 0;
+        for (int transform = 1; transform < this.transformsAmount; transform++) {
+            if (Symmetry.compare(encodings[transform], encodings[best]) < 0)
+                best = transform;
+        }
+        return best;
+
+    }
+
+    public long[] canonicalEncoding(Board board) {
+        return encode(board, canonicalTransform(board));
+    }
+
+    public long hash(Board board, int transform) {
+        // Calculates the Zobrist hash the transformed board would have, see Board.hash
+        // The side to move and score difference aren't changed by symmetries
+        Zobrist zobrist = board.zobrist;
+        long res = zobrist.scoreDifferenceKey(board.scores[0], board.scores[1]);
+        for (int edge : this.edges) {
+            if (board.hasEdge(edge % (2 * this.columns + 1), edge / (2 * this.columns + 1)))
+                res ^= zobrist.edgeKeys[this.edgeMaps[transform][edge]];
+        }
+        if (board.currentPlayer == 1)
+            res ^= zobrist.sideKey;
+        return res;
+    }
+
+    public long canonicalHash(Board board) {
+        // Hash of the canonical position, equal for all symmetric positions
+        int transform = canonicalTransform(board);
+        return (transform == 0 ? board.hash() : hash(board, transform));
+    }
+
+    private static int compare(long[] encoding1, long[] encoding2) {
+        // Compares encodings word by word as unsigned numbers, starting from the first edges
+        for (int i = 0; i < encoding1.length; i++) {
+            if (encoding1[i] != encoding2[i])
+                return Long.compareUnsigned(encoding1[i], encoding2[i]);
+        }
+        return 0;
+    }
+
+}
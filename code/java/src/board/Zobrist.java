@@ -0,0 +1,62 @@
+package board;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Zobrist {
+
+    // Random keys used to hash board positions, see Board.hash
+    // The hash of a position is the XOR of the keys of all drawn edges, the key of the score difference and the side key if player 1 is to move
+    // Tables are generated from a fixed seed and shared by all boards of the same size, so hashes are comparable across boards and runs
+
+    public static final long seed = 4201337;
+
+    private static final ConcurrentHashMap<Integer, Zobrist> tables = new ConcurrentHashMap<>();
+
+    public final int columns, rows;
+    public final long[] edgeKeys; // Indexed by edge ID, see Board.edgeToInt
+    public final long[] scoreDifferenceKeys; // Indexed by score of player 0 - score of player 1 + columns * rows
+    public final long sideKey;
+
+    private Zobrist(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        Random rand = new Random(Zobrist.seed ^ Zobrist.sizeKey(columns, rows));
+        this.edgeKeys = new long[(2 * columns + 1) * (2 * rows + 1)];
+        for (int i = 0; i < this.edgeKeys.length; i++) {
+            this.edgeKeys[i] = rand.nextLong();
+        }
+        this.scoreDifferenceKeys = new long[2 * columns * rows + 1];
+        for (int i = 0; i < this.scoreDifferenceKeys.length; i++) {
+            this.scoreDifferenceKeys[i] = rand.nextLong();
+        }
+        this.sideKey = rand.nextLong();
+    }
+
+    public static Zobrist forSize(int columns, int rows) {
+        return Zobrist.tables.computeIfAbsent(Zobrist.sizeKey(columns, rows), key -> new Zobrist(columns, rows));
+    }
+
+    private static int sizeKey(int columns, int rows) {
+        return (columns << 16) | rows;
+    }
+
+    public long scoreDifferenceKey(int score0, int score1) {
+        return this.scoreDifferenceKeys[score0 - score1 + this.columns * this.rows];
+    }
+
+    public long hash(Board board) {
+        // Calculates the hash of the board from scratch, the board keeps its own hash up to date incrementally
+        long res = scoreDifferenceKey(board.scores[0], board.scores[1]);
+        for (int x = 0; x < 2 * this.columns + 1; x++) {
+            for (int y = (x + 1) % 2; y < 2 * this.rows + 1; y += 2) {
+                if (board.hasEdge(x, y))
+                    res ^= this.edgeKeys[board.edgeToInt(x, y)];
+            }
+        }
+        if (board.currentPlayer == 1)
+            res ^= this.sideKey;
+        return res;
+    }
+
+}
@@ -6,6 +6,7 @@ public abstract class Agent {
     public final double timeLimit;
     public final int rows, columns;
     public String gameId;
+    public TimeManager timeManager; // Decides how long to search for every move, by default the whole limit per move, only used by the MCTS3 agents
 
     public Agent(int player, double timeLimit, int rows, int columns, String gameId) {
         // first player has index 0
@@ -15,6 +16,7 @@ public abstract class Agent {
         this.rows = rows;
         this.columns = columns;
         this.gameId = gameId;
+        this.timeManager = TimeManager.perMove(this.timeLimit);
     }
 
     // Is called to notify the agent of a new move which was made
@@ -24,4 +26,8 @@ public abstract class Agent {
     // Returns a x,y-tuple in the edge coordinate system (so in a grid of size (2*rows + 1)x(2*columns + 1))
     public abstract int[] getNextMove();
 
+    // Is called when the game ended or was abandoned, agents that keep threads or other resources beyond a call should release them here
+    public void stop() {
+    }
+
 }
@@ -1,7 +1,8 @@
 package main;
 
 import board.Board;
-import board.MoveIterator;
+import board.EndgameEvaluator;
+import board.MoveClassIterator;
 
 public class AlphaBeta {
 
@@ -14,18 +15,25 @@ public class AlphaBeta {
 
     public double startTime;
     public static final double maxTime = 5;
+    public boolean moveClasses = true; // If true, only one move per class of equivalent moves is searched, see MoveClassIterator
 
     public AlphaBeta() {
         this.startTime = System.nanoTime() / 1000000000.0;
     }
 
     public static int search(Board board) {
+        return AlphaBeta.search(board, true);
+    }
+
+    public static int search(Board board, boolean moveClasses) {
 
         // Returns -1 (player 1 wins), 0 (tie) or 1 (player 0 wins) in best outcome for current player
         boolean temp = board.recordUndo;
         board.recordUndo = true;
         int[] killerMoves = new int[board.movesLeft];
-        int res = (new AlphaBeta()).alphaBeta(board, killerMoves, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+        AlphaBeta alphaBeta = new AlphaBeta();
+        alphaBeta.moveClasses = moveClasses;
+        int res = alphaBeta.alphaBeta(board, killerMoves, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
         board.recordUndo = temp;
         return res;
 
@@ -48,6 +56,12 @@ public class AlphaBeta {
             return (int) Math.signum(board.scores[0] - board.scores[1]);
         }
 
+        // Simple loony endgames don't need to be searched
+        int difference = EndgameEvaluator.scoreDifference(board);
+        if (difference != EndgameEvaluator.NO_VALUE) {
+            return (int) Math.signum(difference);
+        }
+
         if (board.currentPlayer == 0) {
 
             // Maximizing player
@@ -71,7 +85,11 @@ public class AlphaBeta {
                 if (killerMove != 0) {
                     int[] edgeCoords = board.intToEdge(killerMove);
                     // Check if killer move is legal
-                    if (!board.edges[edgeCoords[0]][edgeCoords[1]]) {
+                    if (!board.hasEdge(edgeCoords[0], edgeCoords[1])) {
+                        // Play the representative of its class, so the iterator below can skip it
+                        if (this.moveClasses)
+                            killerMove = MoveClassIterator.representative(board, killerMove);
+                        edgeCoords = board.intToEdge(killerMove);
                         if (print) {
                             System.out.println("Processing child " + ++counter + "/" + board.movesLeft);
                         }
@@ -85,12 +103,12 @@ public class AlphaBeta {
                     }
                 }
 
-                for (MoveIterator it = board.getLegalMoveIterator(); it.hasNext(); ) {
-                    // Check all legal moves except for killer move
+                for (MoveClassIterator it = new MoveClassIterator(board, this.moveClasses); it.hasNext(); ) {
+                    // Check one move per class of equivalent legal moves except for killer move
                     if (print) {
                         System.out.println("Processing child " + ++counter + "/" + board.movesLeft);
                     }
-                    int[] edgeCoords = it.getNextMove();
+                    int[] edgeCoords = board.intToEdge(it.getNextMove());
                     if (board.edgeToInt(edgeCoords[0], edgeCoords[1]) == killerMove) {
                         // Already considered, skip
                         continue;
@@ -118,7 +136,7 @@ public class AlphaBeta {
                     board.registerMove(edgeCoords[0], edgeCoords[1]);
                     value = Math.min(value, alphaBeta(board, killerMoves, alpha, beta, false));
                     board.undo();
-                    alpha = Math.min(alpha, value);
+                    beta = Math.min(beta, value);
                     if (beta <= alpha)
                         break;
                 }
@@ -131,26 +149,30 @@ public class AlphaBeta {
                 if (killerMove != 0) {
                     int[] edgeCoords = board.intToEdge(killerMove);
                     // Check if killer move is legal
-                    if (!board.edges[edgeCoords[0]][edgeCoords[1]]) {
+                    if (!board.hasEdge(edgeCoords[0], edgeCoords[1])) {
+                        // Play the representative of its class, so the iterator below can skip it
+                        if (this.moveClasses)
+                            killerMove = MoveClassIterator.representative(board, killerMove);
+                        edgeCoords = board.intToEdge(killerMove);
                         if (print) {
                             System.out.println("Processing child " + ++counter + "/" + board.movesLeft);
                         }
                         board.registerMove(edgeCoords[0], edgeCoords[1]);
                         value = Math.min(value, alphaBeta(board, killerMoves, alpha, beta, false));
                         board.undo();
-                        beta = Math.min(alpha, value);
+                        beta = Math.min(beta, value);
                         if (beta <= alpha) {
                             return value;
                         }
                     }
                 }
 
-                for (MoveIterator it = board.getLegalMoveIterator(); it.hasNext(); ) {
-                    // Check all legal moves except for killer move
+                for (MoveClassIterator it = new MoveClassIterator(board, this.moveClasses); it.hasNext(); ) {
+                    // Check one move per class of equivalent legal moves except for killer move
                     if (print) {
                         System.out.println("Processing child " + ++counter + "/" + board.movesLeft);
                     }
-                    int[] edgeCoords = it.getNextMove();
+                    int[] edgeCoords = board.intToEdge(it.getNextMove());
                     if (board.edgeToInt(edgeCoords[0], edgeCoords[1]) == killerMove) {
                         // Already considered, skip
                         continue;
@@ -158,7 +180,7 @@ public class AlphaBeta {
                     board.registerMove(edgeCoords[0], edgeCoords[1]);
                     value = Math.min(value, alphaBeta(board, killerMoves, alpha, beta, false));
                     board.undo();
-                    beta = Math.min(alpha, value);
+                    beta = Math.min(beta, value);
                     if (beta <= alpha) {
                         killerMoves[board.movesLeft - 1] = board.edgeToInt(edgeCoords[0], edgeCoords[1]);
                         break;
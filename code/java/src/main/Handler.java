@@ -19,6 +19,7 @@ public class Handler extends WebSocketServer {
     public Agent agent;
     public JsonParser parser = new JsonParser();
     private static int strategy_number = -1;
+    private static double game_time = 0;
 
     public static void main(String[] args) {
         Handler.JSAPMain(args);
@@ -47,7 +48,14 @@ public class Handler extends WebSocketServer {
                     "3: the latter extended with search tree reuse\n" +
                     "4: the latter extended with optimal moves\n" +
                     "5: the latter extended with increased search time\n" +
-                    "6: strategy 4 extended with a neural network heuristic\n"
+                    "6: strategy 4 extended with a neural network heuristic\n" +
+                    "7: strategy 6 searching with a thread per core\n" +
+                    "8: strategy 6 searching a separate tree per core\n" +
+                    "9: strategy 6 with a batch of parallel simulations per expansion\n" +
+                    "10: strategy 6 with a compact search tree without boards\n" +
+                    "11: strategy 6 sharing nodes between transpositions\n" +
+                    "12: strategy 6 extended with searching during the opponent's turn\n" +
+                    "13: strategy 6 evaluating the neural network for a batch of simulations at once\n"
             );
             jsap.registerParameter(s);
 
@@ -59,6 +67,16 @@ public class Handler extends WebSocketServer {
                     .setAllowMultipleDeclarations(false);
             p.setHelp("Port on which the agent will run.");
             jsap.registerParameter(p);
+
+            FlaggedOption g = new FlaggedOption("gametime")
+                    .setStringParser(JSAP.DOUBLE_PARSER)
+                    .setDefault("0")
+                    .setShortFlag('g')
+                    .setLongFlag("game-time")
+                    .setAllowMultipleDeclarations(false);
+            g.setHelp("Time limit for all moves of a game together in seconds, 0 for none.\n" +
+                    "Strategies 6-13 then spread it over the game, without exceeding the time limit per move of the game.");
+            jsap.registerParameter(g);
         } catch (JSAPException e) {
             e.printStackTrace();
         }
@@ -80,12 +98,14 @@ public class Handler extends WebSocketServer {
         }
 
         int config_strategy_number = config.getInt("strategy");
-        if (config_strategy_number >= 0 && config_strategy_number <= 6) {
+        if (config_strategy_number >= 0 && config_strategy_number <= 13) {
             strategy_number = config_strategy_number;
         } else {
             strategy_number = 6;
         }
 
+        game_time = config.getDouble("gametime");
+
         int port = config.getInt("port");
         WebSocketServer server = new Handler(new InetSocketAddress("localhost", port));
         System.out.println("Starting server on ws://127.0.0.1:" + Integer.toString(port));
@@ -112,6 +132,8 @@ public class Handler extends WebSocketServer {
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         System.out.println("Closed connection.");
+        if (this.agent != null)
+            this.agent.stop();
     }
 
     @Override
@@ -151,13 +173,39 @@ public class Handler extends WebSocketServer {
                 case 6:
                     factory = new MCTS3.MCTSAgentFactory();
                     break;
+                case 7:
+                    factory = new MCTS3.TreeParallelAgentFactory();
+                    break;
+                case 8:
+                    factory = new MCTS3.RootParallelAgentFactory();
+                    break;
+                case 9:
+                    factory = new MCTS3.LeafParallelAgentFactory();
+                    break;
+                case 10:
+                    factory = new MCTS3.CompactAgentFactory();
+                    break;
+                case 11:
+                    factory = new MCTS3.TranspositionAgentFactory();
+                    break;
+                case 12:
+                    factory = new MCTS3.PonderingAgentFactory();
+                    break;
+                case 13:
+                    factory = new MCTS3.BatchedAgentFactory();
+                    break;
                 case 0:
                     factory = (int player1, double timeLimit1, int rows1, int columns1, String gameId1) -> new TestAgent(player1, timeLimit1, rows1, columns1, gameId1);
                     break;
                 default:
                     factory = new MCTS3.MCTSAgentFactory();
             }
+            // A previous game might not have been ended properly
+            if (this.agent != null)
+                this.agent.stop();
             this.agent = factory.create(player, timeLimit, rows, columns, gameId);
+            if (game_time > 0)
+                this.agent.timeManager = TimeManager.perGame(game_time, this.agent.timeLimit);
 
             // If we are player 1, respond right away
             if (this.agent.player == 0)
@@ -188,6 +236,8 @@ public class Handler extends WebSocketServer {
         } else if (type.equals("end")) {
             // Handle end message
             System.out.println("Received end message!");
+            if (this.agent != null)
+                this.agent.stop();
         }
 
     }
@@ -64,6 +64,22 @@ public class Simulator {
             res = Simulator.simulate(new MCTS2.MCTSAgentFactory(), new MCTS2.AsyncSearchAgentFactory(), gamesAmount, timelimit, size, size, size, size, false);
             writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)));
             writer.println(Arrays.toString(res));
+
+            simulationStage = "Simulating MCTS3TreeParallel vs MCTS3RootParallel, size: " + Integer.toString(size);
+            writer.println(simulationStage);
+            writer.close();
+            System.out.println(simulationStage);
+            res = Simulator.simulate(new MCTS3.TreeParallelAgentFactory(), new MCTS3.RootParallelAgentFactory(), gamesAmount, timelimit, size, size, size, size, false);
+            writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)));
+            writer.println(Arrays.toString(res));
+
+            simulationStage = "Simulating MCTS3 vs MCTS3Transposition, size: " + Integer.toString(size);
+            writer.println(simulationStage);
+            writer.close();
+            System.out.println(simulationStage);
+            res = Simulator.simulate(new MCTS3.MCTSAgentFactory(), new MCTS3.TranspositionAgentFactory(), gamesAmount, timelimit, size, size, size, size, false);
+            writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)));
+            writer.println(Arrays.toString(res));
         }
         writer.close();
     }
@@ -130,6 +146,9 @@ public class Simulator {
                 System.out.println("Moves: " + mcts3.moves);
                 System.out.println("Average iterations/move: " + (double) mcts3.iterations / mcts3.moves);
                 System.out.println("Average time/iteration: " + timeLimit * mcts3.moves / mcts3.iterations);
+                System.out.println("Iterations/second: " + mcts3.iterationsPerSecond());
+                if (mcts3.evaluationCache != null)
+                    System.out.println("Evaluation cache hit rate: " + mcts3.evaluationCache.hitRate());
 
 
                 System.out.println(Arrays.toString(board.scores));
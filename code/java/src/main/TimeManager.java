@@ -0,0 +1,175 @@
+package main;
+
+import board.BitBoard;
+import board.Board;
+import board.BoardState;
+
+import java.util.Random;
+
+public class TimeManager {
+
+    // Decides how long an agent searches for every move
+    // Every move gets a soft time and a hard time: the search stops at the soft time if the best move has been stable for a while, and always at the hard time
+    // It also stops early when the best move can't be overtaken anymore before the hard time, or when there's only one sensible move
+    // With a limit per move, the hard time is the limit and time saved by stopping early is only useful for pondering, so by default the whole limit is used
+    // With a limit per game, time saved by stopping early stays in the remaining time and is spread over the rest of the game
+    // A limit per game can be combined with a limit per move, which then caps the hard time
+
+    public static final double stableFraction = 0.25; // Part of the soft time the best move has to stay the same to stop at the soft time
+    public static final double maxExtension = 3; // Hard time is at most this times the soft time with a limit per game
+
+    public final boolean perGame;
+    public final boolean stopEarly; // If false, every move is searched until the hard time
+    public final double moveLimit; // Limit per move, infinite if there's only a limit per game
+    public double remaining; // Time left for the rest of the game, only used with a limit per game
+    public double softTime, hardTime; // Of the current move, in seconds
+    int lastBest; // Best move at the last check
+    double lastChange; // Time at which the best move last changed
+    double moveSoftTime = Double.NaN; // Soft time of every move instead of the one based on the phase weight, see forMove
+
+    private TimeManager(boolean perGame, boolean stopEarly, double moveLimit, double remaining) {
+        this.perGame = perGame;
+        this.stopEarly = stopEarly;
+        this.moveLimit = moveLimit;
+        this.remaining = remaining;
+    }
+
+    public static void main(String[] args) {
+        TimeManager.test();
+    }
+
+    public static TimeManager perMove(double moveLimit) {
+        return TimeManager.perMove(moveLimit, false);
+    }
+
+    public static TimeManager perMove(double moveLimit, boolean stopEarly) {
+        // Stopping early only pays off if the agent uses the saved time, like PonderingAgent does
+        return new TimeManager(false, stopEarly, moveLimit, Double.POSITIVE_INFINITY);
+    }
+
+    public static TimeManager perGame(double gameLimit) {
+        return TimeManager.perGame(gameLimit, Double.POSITIVE_INFINITY);
+    }
+
+    public static TimeManager perGame(double gameLimit, double moveLimit) {
+        return new TimeManager(true, true, moveLimit, gameLimit);
+    }
+
+    public static TimeManager forMove(TimeManager manager) {
+        // Manager for the current move of the given manager, with its soft and hard time, for agents that split a search over multiple searchers like RootParallelAgent
+        TimeManager moveManager = new TimeManager(false, manager.stopEarly, manager.hardTime, Double.POSITIVE_INFINITY);
+        moveManager.moveSoftTime = manager.softTime;
+        return moveManager;
+    }
+
+    public static double phaseWeight(Board board) {
+        // Relative importance of the move, the most important decisions are made in the second half of the start of the game, when the chains are formed
+        // Early moves rarely matter, and at the end of the game optimal moves take care of most decisions
+        int edges = 2 * board.columns * board.rows + board.columns + board.rows;
+        if (board.getState() == BoardState.START && 3 * board.movesLeft <= 2 * edges)
+            return 1.0;
+        return 0.5;
+    }
+
+    public void startMove(Board board) {
+
+        // Calculates the soft and hard time for the move on this board
+        double weight = TimeManager.phaseWeight(board);
+        if (this.perGame) {
+            // Spread the remaining time over our remaining moves, about half of the moves left
+            double base = this.remaining / Math.max(1, (board.movesLeft + 1) / 2);
+            // Never more than half of the remaining time, so the last moves always have time left, which also limits the soft time of the last moves
+            this.hardTime = Math.min(Math.min(TimeManager.maxExtension * base * weight, this.remaining / 2), this.moveLimit);
+            this.softTime = Math.min(base * weight, this.hardTime);
+        } else if (!Double.isNaN(this.moveSoftTime)) {
+            this.softTime = this.moveSoftTime;
+            this.hardTime = this.moveLimit;
+        } else {
+            this.softTime = (this.stopEarly ? this.moveLimit * weight : this.moveLimit);
+            this.hardTime = this.moveLimit;
+        }
+        this.lastBest = -1;
+        this.lastChange = 0;
+
+    }
+
+    public boolean shouldStop(Board board, double elapsed, double iterationsPerSecond, int best, int bestPlays, int secondPlays) {
+
+        // Checks if the search for the current move should stop
+        // best is the most played move at the root, bestPlays and secondPlays are the plays of the most and second most played moves
+        // Should be called after at least one iteration
+
+        if (elapsed >= this.hardTime || !this.stopEarly)
+            return elapsed >= this.hardTime;
+
+        // Only one sensible move
+        if (board.movesLeft <= 1 || board.getOptimalMoves().length == 1)
+            return true;
+
+        if (best != this.lastBest) {
+            this.lastBest = best;
+            this.lastChange = elapsed;
+        }
+
+        // The second best move can't catch up anymore, even if it gets all remaining iterations
+        if (bestPlays - secondPlays > (this.hardTime - elapsed) * iterationsPerSecond)
+            return true;
+
+        // Stop at the soft time unless the best move changed recently
+        return elapsed >= this.softTime && elapsed - this.lastChange >= TimeManager.stableFraction * this.softTime;
+
+    }
+
+    public void endMove(double elapsed) {
+        if (this.perGame)
+            this.remaining -= elapsed;
+    }
+
+    public static void test() {
+
+        // Plays random games with a limit per game, searching every move with a fake search that takes iterationTime per iteration
+        // The remaining time should never run out, also not on the last moves, and no move should take longer than its hard time plus one iteration
+
+        Random rand = new Random(0);
+        double iterationTime = 0.0001;
+        int overdrawn = 0;
+        int moves = 0;
+        double minRemaining = Double.POSITIVE_INFINITY;
+        for (int game = 0; game < 200; game++) {
+            Board board = new BitBoard(rand.nextInt(8) + 2, rand.nextInt(8) + 2, false);
+            double gameLimit = 0.5 + rand.nextDouble() * 10;
+            TimeManager manager = (game % 2 == 0 ? TimeManager.perGame(gameLimit) : TimeManager.perGame(gameLimit, gameLimit / 10));
+            int player = game % 4 / 2;
+            while (board.movesLeft > 0) {
+                if (board.getCurrentPlayer() == player) {
+
+                    // Search with random root statistics, in the same way as MCTS3.MCTSAgent.getNextMove
+                    double remaining = manager.remaining;
+                    manager.startMove(board);
+                    double elapsed = 0;
+                    int bestPlays = 0, secondPlays = 0;
+                    while (true) {
+                        elapsed += iterationTime;
+                        if (rand.nextBoolean())
+                            bestPlays++;
+                        else
+                            secondPlays++;
+                        if (elapsed >= manager.hardTime || manager.shouldStop(board, elapsed, 1 / iterationTime, (bestPlays >= secondPlays ? 1 : 2), Math.max(bestPlays, secondPlays), Math.min(bestPlays, secondPlays)))
+                            break;
+                    }
+                    manager.endMove(elapsed);
+                    if (manager.hardTime > remaining / 2 || manager.hardTime > manager.moveLimit || elapsed > manager.hardTime + 2 * iterationTime || manager.remaining <= 0)
+                        overdrawn++;
+                    minRemaining = Math.min(minRemaining, manager.remaining / gameLimit);
+                    moves++;
+
+                }
+                board.registerMove(board.getRandomLegalMoveAsInt(rand));
+            }
+        }
+        System.out.println("Moves that overdrew the time limit: " + overdrawn + " of " + moves);
+        System.out.println("Minimum remaining part of the game limit: " + minRemaining);
+
+    }
+
+}
@@ -4,4 +4,24 @@ public class CustomMath {
 
     public static final double epsilon = Math.pow(10, -9);
 
+    // Tables for functions of small non-negative integers, such as visit counts
+    public static final int tableSize = 1 << 16;
+    private static final double[] logTable = new double[CustomMath.tableSize];
+    private static final double[] inverseSqrtTable = new double[CustomMath.tableSize];
+
+    static {
+        for (int i = 0; i < CustomMath.tableSize; i++) {
+            CustomMath.logTable[i] = Math.log(i);
+            CustomMath.inverseSqrtTable[i] = 1 / Math.sqrt(i);
+        }
+    }
+
+    public static double log(int value) {
+        return (value < CustomMath.tableSize ? CustomMath.logTable[value] : Math.log(value));
+    }
+
+    public static double inverseSqrt(int value) {
+        return (value < CustomMath.tableSize ? CustomMath.inverseSqrtTable[value] : 1 / Math.sqrt(value));
+    }
+
 }
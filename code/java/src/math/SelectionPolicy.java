@@ -0,0 +1,76 @@
+package math;
+
+public interface SelectionPolicy {
+
+    // Formula used to select a child during MCTS selection, the child with the highest value is selected
+    // parentTerm is called once per parent, value once per child, so everything that only depends on the parent should be done in parentTerm
+    // score is the sum of the scores of all plays of the child, squaredScore the sum of their squares, plays is never 0
+
+    double parentTerm(int parentPlays, int children);
+
+    double value(double score, double squaredScore, int plays, double parentTerm, int children);
+
+    SelectionPolicy UCB1 = new UCB1();
+    SelectionPolicy UCB1_TUNED = new UCB1Tuned();
+    SelectionPolicy PUCT = new PUCT(1.0);
+
+    class UCB1 implements SelectionPolicy {
+
+        // score / plays + sqrt(2 * log(parentPlays) / plays)
+
+        @Override
+        public double parentTerm(int parentPlays, int children) {
+            return Math.sqrt(2 * CustomMath.log(parentPlays));
+        }
+
+        @Override
+        public double value(double score, double squaredScore, int plays, double parentTerm, int children) {
+            return score / plays + parentTerm * CustomMath.inverseSqrt(plays);
+        }
+
+    }
+
+    class UCB1Tuned implements SelectionPolicy {
+
+        // Replaces the constant 2 of UCB1 by an upper bound on the variance of the scores of the child (at most 1/4 for scores between 0 and 1)
+        // score / plays + sqrt(log(parentPlays) / plays * min(1/4, variance + sqrt(2 * log(parentPlays) / plays)))
+
+        @Override
+        public double parentTerm(int parentPlays, int children) {
+            return CustomMath.log(parentPlays);
+        }
+
+        @Override
+        public double value(double score, double squaredScore, int plays, double parentTerm, int children) {
+            double mean = score / plays;
+            double inverseSqrtPlays = CustomMath.inverseSqrt(plays);
+            double variance = squaredScore / plays - mean * mean + Math.sqrt(2 * parentTerm) * inverseSqrtPlays;
+            return mean + Math.sqrt(parentTerm * Math.min(0.25, variance)) * inverseSqrtPlays;
+        }
+
+    }
+
+    class PUCT implements SelectionPolicy {
+
+        // score / plays + exploration * prior * sqrt(parentPlays) / (1 + plays)
+        // Without a policy to give priors, every child gets the same prior
+
+        public final double exploration;
+
+        public PUCT(double exploration) {
+            this.exploration = exploration;
+        }
+
+        @Override
+        public double parentTerm(int parentPlays, int children) {
+            return this.exploration * Math.sqrt(parentPlays) / children;
+        }
+
+        @Override
+        public double value(double score, double squaredScore, int plays, double parentTerm, int children) {
+            return score / plays + parentTerm / (1 + plays);
+        }
+
+    }
+
+}